@@ -3,8 +3,10 @@ package com.github.wikibot.dumps;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -19,6 +21,10 @@ import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
 abstract class AbstractXMLDumpReader {
+    boolean lazyText;
+    Set<XMLRevisionField> fields = EnumSet.allOf(XMLRevisionField.class);
+    DumpMetrics metrics = DumpMetrics.DISABLED; // subclasses count bytes in getInputStream()
+
     public Optional<Long> getSize() {
         return Optional.empty();
     }
@@ -46,14 +52,28 @@ abstract class AbstractXMLDumpReader {
 
     public final void runSAXReader(Consumer<XMLRevision> cons) throws IOException {
         Objects.requireNonNull(cons);
-        var sph = new SAXPageHandler(cons);
+        var sph = new SAXPageHandler(cons, fields);
         runSAXReaderTemplate(sph);
     }
 
     public final void runParallelSAXReader(Consumer<XMLRevision> cons) throws IOException {
+        runParallelSAXReader(cons, Runtime.getRuntime().availableProcessors());
+    }
+
+    public final void runParallelSAXReader(Consumer<XMLRevision> cons, int threads) throws IOException {
+        runParallelSAXReader(cons, threads, threads * 2);
+    }
+
+    // returns once all revisions have been consumed; the parser blocks while maxInFlight revisions are pending
+    public final void runParallelSAXReader(Consumer<XMLRevision> cons, int threads, int maxInFlight) throws IOException {
         Objects.requireNonNull(cons);
-        var sph = new SAXConcurrentPageHandler(cons);
-        runSAXReaderTemplate(sph);
+        var sph = new SAXConcurrentPageHandler(cons, fields, threads, maxInFlight);
+
+        try {
+            runSAXReaderTemplate(sph);
+        } finally {
+            sph.shutdownNow();
+        }
     }
 
     public Stream<XMLRevision> getStAXReaderStream() {
@@ -63,9 +83,9 @@ abstract class AbstractXMLDumpReader {
             var factory = XMLInputFactory.newInstance();
             var streamReader = factory.createXMLStreamReader(input);
             var dumpSize = getSize().orElse(0L);
-            var staxReader = new StAXDumpReader(streamReader, dumpSize);
+            var staxReader = new StAXDumpReader(streamReader, dumpSize, lazyText, fields);
 
-            return StreamSupport.stream(staxReader.spliterator(), false).onClose(() -> {
+            return StreamSupport.stream(metrics.wrap(staxReader.spliterator()), false).onClose(() -> {
                 try {
                     streamReader.close();
                 } catch (XMLStreamException e) {
@@ -76,4 +96,16 @@ abstract class AbstractXMLDumpReader {
             throw new UncheckedIOException(new IOException(e));
         }
     }
+
+    public Stream<XMLRevision> getScannerReaderStream() {
+        var scanner = new ByteScannerDumpReader(getInputStream(), getSize().orElse(0L), lazyText, fields);
+
+        return StreamSupport.stream(metrics.wrap(scanner.spliterator()), false).onClose(() -> {
+            try {
+                scanner.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
 }
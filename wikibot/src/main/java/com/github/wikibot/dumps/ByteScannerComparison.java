@@ -0,0 +1,202 @@
+package com.github.wikibot.dumps;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// checks that ByteScannerDumpReader and StAXDumpReader produce identical revisions, field by field; run without
+// arguments to compare them on a built-in sample of schema edge cases, or pass dump files (compressed or not)
+final class ByteScannerComparison {
+    private static final String SAMPLE = """
+        <mediawiki xmlns="http://www.mediawiki.org/xml/export-0.11/" version="0.11" xml:lang="pl">
+          <siteinfo>
+            <sitename>Wikisłownik</sitename>
+            <dbname>plwiktionary</dbname>
+            <namespaces>
+              <namespace key="0" case="case-sensitive" />
+              <namespace key="1" case="case-sensitive">Dyskusja</namespace>
+            </namespaces>
+          </siteinfo>
+          <!-- a comment between pages -->
+          <page>
+            <title>Q&amp;A &lt;test&gt; &quot;x&quot; &apos;y&apos; &#380;&#x17C; 😀</title>
+            <ns>0</ns>
+            <id>1</id>
+            <redirect title="Cel &amp; co" />
+            <revision>
+              <id>10</id>
+              <timestamp>2020-01-02T03:04:05Z</timestamp>
+              <contributor>
+                <username>Użytkownik &amp; spółka</username>
+                <id>5</id>
+              </contributor>
+              <minor />
+              <comment>a &lt;b&gt; &amp;amp; c</comment>
+              <origin>10</origin>
+              <model>wikitext</model>
+              <format>text/x-wiki</format>
+              <text bytes="74" sha1="0123456789abcdefghijklmnopqrstu" xml:space="preserve">#PATRZ [[Cel &amp; co]]
+        &lt;ref name=&quot;a&quot;&gt;x&lt;/ref&gt; &amp;nbsp; ]]&gt; &#9;tab	 end
+        </text>
+              <sha1>0123456789abcdefghijklmnopqrstu</sha1>
+            </revision>
+          </page>
+          <page>
+            <title>Dyskusja:Ukryte</title>
+            <ns>1</ns>
+            <id>2</id>
+            <restrictions>edit=sysop:move=sysop</restrictions>
+            <revision>
+              <id>20</id>
+              <parentid>19</parentid>
+              <timestamp>2021-12-31T23:59:59Z</timestamp>
+              <contributor deleted="deleted" />
+              <comment deleted="deleted" />
+              <model>wikitext</model>
+              <format>text/x-wiki</format>
+              <text bytes="1234" deleted="deleted" />
+              <sha1 />
+            </revision>
+            <revision>
+              <id>21</id>
+              <parentid>20</parentid>
+              <timestamp>2022-01-01T00:00:00Z</timestamp>
+              <contributor>
+                <ip>2001:db8::1</ip>
+              </contributor>
+              <model>wikitext</model>
+              <format>text/x-wiki</format>
+              <text bytes="0" sha1="phoiac9h4m842xq45sp7s6u21eteeq1" xml:space="preserve" />
+              <sha1>phoiac9h4m842xq45sp7s6u21eteeq1</sha1>
+            </revision>
+          </page>
+          <page>
+            <title>Minimalna</title>
+            <ns>0</ns>
+            <id>3</id>
+            <revision>
+              <id>30</id>
+              <timestamp>2023-06-15T12:00:00Z</timestamp>
+              <contributor>
+                <username>Bot</username>
+                <id>7</id>
+              </contributor>
+              <comment></comment>
+              <text bytes="5" xml:space="preserve">x
+        y
+        </text>
+            </revision>
+          </page>
+        </mediawiki>
+        """;
+
+    public static void main(String[] args) throws Exception {
+        var mismatches = 0L;
+
+        if (args.length == 0) {
+            var bytes = SAMPLE.getBytes(StandardCharsets.UTF_8);
+            mismatches += compare("built-in sample", () -> new ByteArrayInputStream(bytes));
+        } else {
+            for (var arg : args) {
+                var path = Path.of(arg);
+                mismatches += compare(path.getFileName().toString(), () -> newInputStream(path));
+            }
+        }
+
+        if (mismatches != 0) {
+            System.out.printf("%d mismatches found%n", mismatches);
+            System.exit(1);
+        }
+    }
+
+    private static InputStream newInputStream(Path path) {
+        try {
+            return Files.newInputStream(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // every projection is checked, and lazy text against eager text
+    private static long compare(String name, Supplier<InputStream> source) {
+        var mismatches = 0L;
+        var projections = List.of(EnumSet.allOf(XMLRevisionField.class), EnumSet.noneOf(XMLRevisionField.class), EnumSet.of(XMLRevisionField.TEXT));
+
+        for (var fields : projections) {
+            for (var lazyText : List.of(false, true)) {
+                mismatches += compare(name + " " + fields + (lazyText ? " lazy" : ""), source, fields, lazyText);
+            }
+        }
+
+        return mismatches;
+    }
+
+    private static long compare(String name, Supplier<InputStream> source, Set<XMLRevisionField> fields, boolean lazyText) {
+        var staxReader = new XMLDumpReader(source.get());
+        staxReader.fields = fields;
+
+        var scannerReader = new XMLDumpReader(source.get());
+        scannerReader.fields = fields;
+        scannerReader.lazyText = lazyText;
+
+        var mismatches = 0L;
+        var count = 0L;
+
+        try (var expected = staxReader.getStAXReaderStream(); var actual = scannerReader.getScannerReaderStream()) {
+            var it1 = expected.iterator();
+            var it2 = actual.iterator();
+
+            while (it1.hasNext() && it2.hasNext()) {
+                var rev1 = describe(it1.next());
+                var rev2 = describe(it2.next());
+                count++;
+
+                for (int i = 0; i < rev1.size(); i++) {
+                    if (!rev1.get(i).equals(rev2.get(i))) {
+                        System.out.printf("%s, revision #%d: expected %s, got %s%n", name, count, rev1.get(i), rev2.get(i));
+                        mismatches++;
+                    }
+                }
+            }
+
+            if (it1.hasNext() || it2.hasNext()) {
+                System.out.printf("%s: revision count differs after %d revisions%n", name, count);
+                mismatches++;
+            }
+        }
+
+        System.out.printf("%s: %d revisions, %d mismatches%n", name, count, mismatches);
+        return mismatches;
+    }
+
+    private static List<String> describe(XMLRevision rev) {
+        return List.of(
+            "title=" + rev.getTitle(),
+            "ns=" + rev.getNamespace(),
+            "pageid=" + rev.getPageid(),
+            "isRedirect=" + rev.isRedirect(),
+            "revid=" + rev.getRevid(),
+            "parentid=" + rev.getParentid(),
+            "timestamp=" + rev.getTimestamp(),
+            "epochSecond=" + rev.getEpochSecond(),
+            "contributor=" + rev.getContributor(),
+            "isAnon=" + rev.isAnonymousContributor(),
+            "isMinor=" + rev.isMinor(),
+            "comment=" + rev.getComment(),
+            "bytes=" + rev.getBytes(),
+            "sha1=" + rev.getSha1(),
+            "isRevDeleted=" + rev.isRevisionDeleted(),
+            "isCommentDeleted=" + rev.isCommentDeleted(),
+            "isUserDeleted=" + rev.isContributorDeleted(),
+            "text=" + rev.getText()
+        );
+    }
+}
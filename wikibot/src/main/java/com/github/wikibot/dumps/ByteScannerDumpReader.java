@@ -0,0 +1,673 @@
+package com.github.wikibot.dumps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+
+// hand-written scanner for the MediaWiki export schema, an alternative to StAXDumpReader that produces
+// identical revisions; operates on raw UTF-8 bytes and decodes only the element values it is asked for
+public final class ByteScannerDumpReader implements Iterable<XMLRevision>, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int START_TAG = 0;
+    private static final int END_TAG = 1;
+    private static final int OTHER_TAG = 2; // processing instructions, comments, declarations
+
+    private static final int OTHER = 0;
+    private static final int PAGE = 1;
+    private static final int TITLE = 2;
+    private static final int NS = 3;
+    private static final int ID = 4;
+    private static final int REDIRECT = 5;
+    private static final int REVISION = 6;
+    private static final int PARENTID = 7;
+    private static final int TIMESTAMP = 8;
+    private static final int CONTRIBUTOR = 9;
+    private static final int USERNAME = 10;
+    private static final int IP = 11;
+    private static final int MINOR = 12;
+    private static final int COMMENT = 13;
+    private static final int TEXT = 14;
+    private static final int SHA1 = 15;
+
+    private static final byte[][] ELEMENT_NAMES = Arrays.stream(new String[] {
+        "", "page", "title", "ns", "id", "redirect", "revision", "parentid", "timestamp", "contributor", "username", "ip", "minor", "comment", "text", "sha1"
+    }).map(name -> name.getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+
+    private static final byte[] ATTR_BYTES = "bytes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ATTR_DELETED = "deleted".getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream in;
+    private final long estimateSize;
+    private final boolean lazyText;
+    private final Set<XMLRevisionField> fields;
+
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    // the last tag read
+    private final ByteSlice tagName = new ByteSlice(64);
+    private final ByteSlice tagAttributes = new ByteSlice(256);
+    private int tagType;
+    private int tagId;
+    private boolean selfClosing;
+    private boolean pendingTag; // a value has been read up to the opening bracket of the next tag
+
+    private final ByteSlice value = new ByteSlice(1024);
+
+    public ByteScannerDumpReader(InputStream in) {
+        this(in, 0, false, EnumSet.allOf(XMLRevisionField.class));
+    }
+
+    public ByteScannerDumpReader(InputStream in, long estimateSize, boolean lazyText, Set<XMLRevisionField> fields) {
+        if (estimateSize < 0) {
+            throw new IllegalArgumentException("Negative estimateSize value: " + estimateSize);
+        }
+
+        this.in = Objects.requireNonNull(in);
+        this.estimateSize = estimateSize;
+        this.lazyText = lazyText;
+
+        var projection = EnumSet.noneOf(XMLRevisionField.class);
+        projection.addAll(fields);
+        this.fields = Collections.unmodifiableSet(projection);
+    }
+
+    @Override
+    public Iterator<XMLRevision> iterator() {
+        return new ScannerIterator();
+    }
+
+    @Override
+    public Spliterator<XMLRevision> spliterator() {
+        if (lazyText) {
+            return new StAXDumpReader.SequentialSpliterator(iterator(), estimateSize);
+        } else {
+            return new PageAlignedSpliterator(iterator(), estimateSize);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+
+        if (n == -1) {
+            return false;
+        }
+
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw new IOException("Unexpected end of dump file");
+        }
+
+        return buf[pos++];
+    }
+
+    private boolean skipToTag() throws IOException {
+        while (true) {
+            for (int i = pos; i < limit; i++) {
+                if (buf[i] == '<') {
+                    pos = i + 1;
+                    return true;
+                }
+            }
+
+            pos = limit;
+
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    // reads character data up to the next tag, which is left pending; a null slice discards it
+    private void readValue(ByteSlice out) throws IOException {
+        if (out != null) {
+            out.length = 0;
+        }
+
+        if (selfClosing) {
+            return;
+        }
+
+        while (true) {
+            var i = pos;
+
+            while (i < limit && buf[i] != '<') {
+                i++;
+            }
+
+            if (out != null) {
+                out.append(buf, pos, i - pos);
+            }
+
+            if (i < limit) {
+                pos = i + 1;
+                pendingTag = true;
+                return;
+            }
+
+            pos = limit;
+
+            if (!fill()) {
+                throw new IOException("Unexpected end of dump file");
+            }
+        }
+    }
+
+    private boolean nextTag() throws IOException {
+        if (pendingTag) {
+            pendingTag = false;
+        } else if (!skipToTag()) {
+            return false;
+        }
+
+        var b = read();
+
+        if (b == '/') {
+            tagType = END_TAG;
+            tagName.length = 0;
+
+            while ((b = read()) != '>') {
+                if (!isWhitespace(b)) {
+                    tagName.append((byte)b);
+                }
+            }
+        } else if (b == '!' || b == '?') {
+            tagType = OTHER_TAG;
+            tagName.length = 0;
+            skipDeclaration(b);
+            return true;
+        } else {
+            tagType = START_TAG;
+            tagName.length = 0;
+            tagAttributes.length = 0;
+
+            while (b != '>' && b != '/' && !isWhitespace(b)) {
+                tagName.append((byte)b);
+                b = read();
+            }
+
+            var quote = 0;
+            var last = 0;
+
+            // attribute values may contain unescaped '>' and '/' characters
+            while (b != '>' || quote != 0) {
+                if (quote == 0 && (b == '"' || b == '\'')) {
+                    quote = b;
+                } else if (b == quote) {
+                    quote = 0;
+                }
+
+                if (!isWhitespace(b)) {
+                    last = b;
+                }
+
+                tagAttributes.append((byte)b);
+                b = read();
+            }
+
+            selfClosing = last == '/';
+        }
+
+        tagId = resolveElement(tagName);
+        return true;
+    }
+
+    private void skipDeclaration(int type) throws IOException {
+        if (type == '!') {
+            var b1 = read();
+
+            if (b1 == '-') {
+                read(); // second dash
+
+                // comment, terminated by "-->"
+                var dashes = 0;
+                int b;
+
+                while ((b = read()) != '>' || dashes < 2) {
+                    dashes = b == '-' ? dashes + 1 : 0;
+                }
+
+                return;
+            } else if (b1 == '>') {
+                return;
+            }
+        }
+
+        while (read() != '>') {}
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private static int resolveElement(ByteSlice name) {
+        for (int i = 1; i < ELEMENT_NAMES.length; i++) {
+            if (name.equalsTo(ELEMENT_NAMES[i])) {
+                return i;
+            }
+        }
+
+        return OTHER;
+    }
+
+    // returns the raw value of the given attribute of the last start tag, or null if missing
+    private ByteSlice findAttribute(byte[] attrName) {
+        var data = tagAttributes.data;
+        var len = tagAttributes.length;
+        var i = 0;
+
+        while (i < len) {
+            while (i < len && (isWhitespace(data[i]) || data[i] == '/')) {
+                i++;
+            }
+
+            var nameStart = i;
+
+            while (i < len && data[i] != '=' && !isWhitespace(data[i])) {
+                i++;
+            }
+
+            var nameEnd = i;
+
+            while (i < len && data[i] != '"' && data[i] != '\'') {
+                i++;
+            }
+
+            if (i == len) {
+                break;
+            }
+
+            var quote = data[i++];
+            var valueStart = i;
+
+            while (i < len && data[i] != quote) {
+                i++;
+            }
+
+            if (Arrays.equals(data, nameStart, nameEnd, attrName, 0, attrName.length)) {
+                var attr = new ByteSlice(i - valueStart);
+                attr.append(data, valueStart, i - valueStart);
+                return attr;
+            }
+
+            i++;
+        }
+
+        return null;
+    }
+
+    private String readString() throws IOException {
+        readValue(value);
+        return decode(value.data, value.length);
+    }
+
+    private long readLong() throws IOException {
+        readValue(value);
+        return parseLong(value.data, value.length);
+    }
+
+    private static long parseLong(byte[] data, int len) {
+        if (len == 0 || len > 19) {
+            // let the standard parser complain
+            return Long.parseLong(new String(data, 0, len, StandardCharsets.UTF_8));
+        }
+
+        var negative = data[0] == '-';
+        var result = 0L;
+
+        for (int i = negative ? 1 : 0; i < len; i++) {
+            var digit = data[i] - '0';
+
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(new String(data, 0, len, StandardCharsets.UTF_8));
+            }
+
+            result = result * 10 + digit;
+        }
+
+        return negative ? -result : result;
+    }
+
+    // expands entities and normalizes line breaks as any XML parser would
+    static String decode(byte[] data, int len) {
+        var i = 0;
+
+        while (i < len && data[i] != '&' && data[i] != '\r') {
+            i++;
+        }
+
+        if (i == len) {
+            return new String(data, 0, len, StandardCharsets.UTF_8);
+        }
+
+        // decoded output is never longer than its source
+        var out = Arrays.copyOf(data, len);
+        var o = i;
+
+        while (i < len) {
+            var b = data[i];
+
+            if (b == '&') {
+                var semicolon = i + 1;
+
+                while (semicolon < len && data[semicolon] != ';') {
+                    semicolon++;
+                }
+
+                if (semicolon == len) {
+                    throw new UncheckedIOException(new IOException("Unterminated entity reference"));
+                }
+
+                o = writeCodePoint(out, o, resolveEntity(data, i + 1, semicolon));
+                i = semicolon + 1;
+            } else if (b == '\r') {
+                out[o++] = '\n';
+                i++;
+
+                if (i < len && data[i] == '\n') {
+                    i++;
+                }
+            } else {
+                out[o++] = data[i++];
+            }
+        }
+
+        return new String(out, 0, o, StandardCharsets.UTF_8);
+    }
+
+    private static int resolveEntity(byte[] data, int from, int to) {
+        var name = new String(data, from, to - from, StandardCharsets.US_ASCII);
+
+        switch (name) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+        }
+
+        try {
+            if (name.startsWith("#x")) {
+                return Integer.parseInt(name.substring(2), 16);
+            } else if (name.startsWith("#")) {
+                return Integer.parseInt(name.substring(1));
+            }
+        } catch (NumberFormatException e) {}
+
+        throw new UncheckedIOException(new IOException("Unsupported entity reference: &" + name + ";"));
+    }
+
+    private static int writeCodePoint(byte[] out, int o, int cp) {
+        if (cp < 0x80) {
+            out[o++] = (byte)cp;
+        } else if (cp < 0x800) {
+            out[o++] = (byte)(0xc0 | (cp >> 6));
+            out[o++] = (byte)(0x80 | (cp & 0x3f));
+        } else if (cp < 0x10000) {
+            out[o++] = (byte)(0xe0 | (cp >> 12));
+            out[o++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+            out[o++] = (byte)(0x80 | (cp & 0x3f));
+        } else {
+            out[o++] = (byte)(0xf0 | (cp >> 18));
+            out[o++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+            out[o++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+            out[o++] = (byte)(0x80 | (cp & 0x3f));
+        }
+
+        return o;
+    }
+
+    private static class ByteSlice {
+        byte[] data;
+        int length;
+
+        ByteSlice(int capacity) {
+            data = new byte[Math.max(capacity, 16)];
+        }
+
+        void append(byte b) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+
+            data[length++] = b;
+        }
+
+        void append(byte[] src, int off, int len) {
+            if (length + len > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + len));
+            }
+
+            System.arraycopy(src, off, data, length, len);
+            length += len;
+        }
+
+        boolean equalsTo(byte[] other) {
+            return Arrays.equals(data, 0, length, other, 0, other.length);
+        }
+    }
+
+    private class ScannerIterator implements Iterator<XMLRevision> {
+        private final PageInfo pageInfo = new PageInfo();
+        private ByteSlice textBuffer = new ByteSlice(100000);
+        private ByteSlice spareTextBuffer = lazyText ? new ByteSlice(100000) : null;
+        private volatile long textGeneration;
+        private XMLRevision pending;
+
+        @Override
+        public boolean hasNext() {
+            if (pending != null) {
+                return true;
+            }
+
+            try {
+                var inPage = false;
+
+                while (nextTag()) {
+                    if (tagType != START_TAG) {
+                        continue;
+                    }
+
+                    switch (tagId) {
+                        case PAGE:
+                            pageInfo.clear();
+                            inPage = true;
+                            break;
+                        case REVISION:
+                            pending = parseRevision();
+                            return true;
+                        case TITLE:
+                            if (inPage) {
+                                pageInfo.title = readString();
+                            }
+                            break;
+                        case NS:
+                            if (inPage) {
+                                pageInfo.ns = (int)readLong();
+                            }
+                            break;
+                        case ID:
+                            if (inPage) {
+                                pageInfo.id = readLong();
+                            }
+                            break;
+                        case REDIRECT:
+                            if (inPage) {
+                                pageInfo.isRedirect = true;
+                            }
+                            break;
+                    }
+                }
+
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public XMLRevision next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var revision = pending;
+            pending = null;
+            return revision;
+        }
+
+        private XMLRevision parseRevision() throws IOException {
+            var revision = pageInfo.makeRevision();
+
+            while (nextTag()) {
+                if (tagType == END_TAG && tagId == REVISION) {
+                    return revision;
+                } else if (tagType != START_TAG) {
+                    continue;
+                }
+
+                switch (tagId) {
+                    case ID:
+                        // ignore if already set, e.g. contributor's id
+                        var id = readLong();
+
+                        if (revision.revid == 0) {
+                            revision.revid = id;
+                        }
+                        break;
+                    case PARENTID:
+                        revision.parentid = readLong();
+                        break;
+                    case TIMESTAMP:
+                        if (fields.contains(XMLRevisionField.TIMESTAMP)) {
+                            revision.timestamp = readString();
+                            revision.epochSecond = XMLRevision.parseEpochSecond(revision.timestamp);
+                        }
+                        break;
+                    case CONTRIBUTOR:
+                        if (findAttribute(ATTR_DELETED) != null) {
+                            revision.isUserDeleted = true;
+                        }
+                        break;
+                    case USERNAME:
+                        if (fields.contains(XMLRevisionField.CONTRIBUTOR)) {
+                            revision.contributor = readString();
+                        }
+                        break;
+                    case IP: // either this or "username"
+                        if (fields.contains(XMLRevisionField.CONTRIBUTOR)) {
+                            revision.contributor = readString();
+                        }
+                        revision.isAnonymousContributor = true;
+                        break;
+                    case MINOR:
+                        revision.isMinor = true;
+                        break;
+                    case COMMENT:
+                        if (findAttribute(ATTR_DELETED) != null) {
+                            revision.isCommentDeleted = true;
+                        }
+
+                        if (fields.contains(XMLRevisionField.COMMENT)) {
+                            revision.comment = readString();
+                        }
+                        break;
+                    case SHA1:
+                        revision.sha1 = readString();
+                        break;
+                    case TEXT:
+                        var bytes = findAttribute(ATTR_BYTES);
+
+                        if (bytes != null) {
+                            revision.bytes = (int)parseLong(bytes.data, bytes.length);
+                        }
+
+                        if (findAttribute(ATTR_DELETED) != null) {
+                            revision.isRevDeleted = true;
+                        }
+
+                        if (fields.contains(XMLRevisionField.TEXT)) {
+                            readValue(textBuffer);
+
+                            if (lazyText) {
+                                revision.lazyText = detachText();
+                            } else {
+                                revision.text = decode(textBuffer.data, textBuffer.length);
+                            }
+                        }
+                        break;
+                }
+            }
+
+            throw new IOException("Unexpected end of dump file");
+        }
+
+        // hand the current buffer over to the revision, its contents stay intact until the next text element
+        private Supplier<String> detachText() {
+            var generation = ++textGeneration;
+            var slice = textBuffer;
+            textBuffer = spareTextBuffer;
+            spareTextBuffer = slice;
+
+            return () -> {
+                if (generation != textGeneration) {
+                    throw new IllegalStateException("Revision text is no longer available, the dump reader has moved on");
+                }
+
+                return decode(slice.data, slice.length);
+            };
+        }
+    }
+
+    private static class PageInfo {
+        String title;
+        int ns;
+        long id;
+        boolean isRedirect;
+
+        void clear() {
+            isRedirect = false;
+        }
+
+        XMLRevision makeRevision() {
+            var revision = new XMLRevision();
+            revision.title = title;
+            revision.ns = ns;
+            revision.pageid = id;
+            revision.isRedirect = isRedirect;
+            return revision;
+        }
+    }
+}
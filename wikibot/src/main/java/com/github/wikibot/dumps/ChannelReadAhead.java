@@ -0,0 +1,141 @@
+package com.github.wikibot.dumps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+// a single window of positional reads shared by the streams opened on it, so that consecutive chunks (and the
+// read-ahead of each decoder past the end of its chunk) are served by one large read instead of many small ones;
+// not thread-safe, meant for one sequential reader at a time
+class ChannelReadAhead {
+    static final int DEFAULT_WINDOW_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer window;
+    private final DumpMetrics metrics;
+    private long windowStart = -1;
+
+    ChannelReadAhead(FileChannel channel, int windowSize, DumpMetrics metrics) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Illegal read-ahead window size: " + windowSize);
+        }
+
+        this.channel = Objects.requireNonNull(channel);
+        this.window = ByteBuffer.allocate(windowSize).limit(0);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    // the window is filled eagerly, hence I/O errors at the start of a chunk are reported here rather than on read
+    InputStream openAt(long position) throws IOException {
+        locate(position);
+        return new WindowInputStream(position);
+    }
+
+    // returns false at the end of the channel
+    private boolean fill(long position) throws IOException {
+        window.clear();
+        windowStart = position;
+
+        try {
+            // don't move the channel's position, it may be shared with other readers
+            while (window.hasRemaining()) {
+                var n = channel.read(window, position + window.position());
+
+                if (n == -1) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // don't serve a partially filled window to the next chunk
+            window.limit(0);
+            windowStart = -1;
+            throw e;
+        }
+
+        window.flip();
+        metrics.countCompressed(window.limit());
+        return window.hasRemaining();
+    }
+
+    private int locate(long position) throws IOException {
+        if (position < windowStart || position >= windowStart + window.limit()) {
+            if (!fill(position)) {
+                return -1;
+            }
+        }
+
+        return (int)(position - windowStart);
+    }
+
+    private class WindowInputStream extends InputStream {
+        private long position;
+        private long mark;
+
+        WindowInputStream(long position) {
+            this.position = position;
+            this.mark = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var index = locate(position);
+
+            if (index == -1) {
+                return -1;
+            }
+
+            position++;
+            return window.get(index) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+
+            if (len == 0) {
+                return 0;
+            }
+
+            var index = locate(position);
+
+            if (index == -1) {
+                return -1;
+            }
+
+            var n = Math.min(len, window.limit() - index);
+            window.get(index, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = Math.max(Math.min(n, channel.size() - position), 0);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            var index = position - windowStart;
+            return index >= 0 && index < window.limit() ? (int)(window.limit() - index) : 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public void reset() {
+            position = mark;
+        }
+    }
+}
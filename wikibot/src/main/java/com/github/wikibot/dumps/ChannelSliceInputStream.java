@@ -0,0 +1,41 @@
+package com.github.wikibot.dumps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+// positional reads don't alter the channel's position, hence they are safe to run concurrently
+class ChannelSliceInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+
+    ChannelSliceInputStream(FileChannel channel, long position) {
+        this.channel = Objects.requireNonNull(channel);
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        var b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        if (len == 0) {
+            return 0;
+        }
+
+        var n = channel.read(ByteBuffer.wrap(b, off, len), position);
+
+        if (n > 0) {
+            position += n;
+        }
+
+        return n;
+    }
+}
@@ -4,18 +4,55 @@ import java.time.OffsetDateTime;
 import java.time.Period;
 
 public final class CompoundTimeline<E extends Enum<E>> extends Timeline<EnumStats<E>> {
+    private final Class<E> clazz;
+    private final long[][] matrix; // [period][enum ordinal]
+
     CompoundTimeline(OffsetDateTime start, OffsetDateTime end, Period period, Class<E> clazz) {
-        super(start, end, period, time -> new Entry<>(time, new EnumStats<>(clazz)));
+        super(start, end, period);
+        this.clazz = clazz;
+        this.matrix = new long[size()][clazz.getEnumConstants().length];
+    }
+
+    // adds the stats to entries [from, to)
+    void add(int from, int to, EnumStats<E> stats) {
+        for (int i = from; i < to; i++) {
+            stats.addTo(matrix[i]);
+        }
+    }
+
+    @Override
+    void merge(Timeline<EnumStats<E>> other) {
+        checkCompatible(other);
+        var others = ((CompoundTimeline<E>)other).matrix;
+
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                matrix[i][j] += others[i][j];
+            }
+        }
+    }
+
+    @Override
+    Entry getEntry(int index) {
+        return new Entry(index);
     }
 
-    static class Entry<E extends Enum<E>> extends Timeline.Entry<EnumStats<E>> {
-        Entry(OffsetDateTime time, EnumStats<E> value) {
-            super(time, value);
+    class Entry extends Timeline.Entry<EnumStats<E>> {
+        private final int index;
+
+        Entry(int index) {
+            super(CompoundTimeline.this.getTime(index));
+            this.index = index;
+        }
+
+        @Override
+        public EnumStats<E> getValue() {
+            return new EnumStats<>(clazz, matrix[index]);
         }
 
         @Override
         public void combine(EnumStats<E> other) {
-            value.combine(other);
+            other.addTo(matrix[index]);
         }
     }
 }
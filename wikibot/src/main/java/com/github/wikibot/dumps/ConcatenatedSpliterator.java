@@ -0,0 +1,95 @@
+package com.github.wikibot.dumps;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// sources are opened lazily; splits are made along source boundaries, then delegated to the last remaining source
+class ConcatenatedSpliterator<T> implements Spliterator<T> {
+    private final List<Supplier<Spliterator<T>>> sources;
+    private final int characteristics;
+    private final int to;
+
+    private int from;
+    private Spliterator<T> current;
+
+    ConcatenatedSpliterator(List<Supplier<Spliterator<T>>> sources, int characteristics) {
+        this(sources, characteristics, 0, sources.size());
+    }
+
+    private ConcatenatedSpliterator(List<Supplier<Spliterator<T>>> sources, int characteristics, int from, int to) {
+        this.sources = Objects.requireNonNull(sources);
+        this.characteristics = characteristics & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (true) {
+            if (current == null) {
+                if (from >= to) {
+                    return false;
+                }
+
+                current = sources.get(from++).get();
+            }
+
+            if (current.tryAdvance(action)) {
+                return true;
+            }
+
+            current = null;
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (current != null) {
+            current.forEachRemaining(action);
+            current = null;
+        }
+
+        while (from < to) {
+            sources.get(from++).get().forEachRemaining(action);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (current == null) {
+            if (to - from > 1) {
+                var mid = (from + to) >>> 1;
+                var prefix = new ConcatenatedSpliterator<>(sources, characteristics, from, mid);
+                from = mid;
+                return prefix;
+            } else if (to - from == 1) {
+                current = sources.get(from++).get();
+            }
+        }
+
+        return current != null && from >= to ? current.trySplit() : null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        if (hasCharacteristics(Spliterator.SORTED)) {
+            return null; // natural order
+        }
+
+        throw new IllegalStateException();
+    }
+}
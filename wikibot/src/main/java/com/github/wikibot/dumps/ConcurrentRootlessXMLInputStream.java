@@ -0,0 +1,148 @@
+package com.github.wikibot.dumps;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+public class ConcurrentRootlessXMLInputStream extends InputStream {
+    private static final String ROOT_ELEMENT = "dummy_root";
+    private static final int CHUNK_BUFFER_SIZE = 1 << 16;
+
+    private final Iterator<Long> offsetsIter;
+    private final FileChannel dumpChannel;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Deque<Future<byte[]>> inFlight;
+    private final ByteArrayInputStream endRoot;
+    private final DumpMetrics metrics;
+
+    private ByteArrayInputStream currentStream;
+    private boolean closed;
+
+    ConcurrentRootlessXMLInputStream(FileChannel fch, Iterable<Long> offsets, int threads, int maxInFlight) {
+        this(fch, offsets, threads, maxInFlight, DumpMetrics.DISABLED);
+    }
+
+    ConcurrentRootlessXMLInputStream(FileChannel fch, Iterable<Long> offsets, int threads, int maxInFlight, DumpMetrics metrics) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads: " + threads);
+        }
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Illegal number of chunks in flight: " + maxInFlight);
+        }
+
+        this.metrics = Objects.requireNonNull(metrics);
+        offsetsIter = offsets.iterator();
+        dumpChannel = Objects.requireNonNull(fch);
+        executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().daemon().factory());
+        this.maxInFlight = maxInFlight;
+        inFlight = new ArrayDeque<>(maxInFlight);
+
+        currentStream = new ByteArrayInputStream(String.format("<%s>", ROOT_ELEMENT).getBytes());
+        endRoot = new ByteArrayInputStream(String.format("</%s>", ROOT_ELEMENT).getBytes());
+
+        submitPending();
+    }
+
+    private void submitPending() {
+        while (inFlight.size() < maxInFlight && offsetsIter.hasNext()) {
+            var offset = offsetsIter.next();
+            inFlight.add(executor.submit(() -> decodeChunk(offset)));
+        }
+    }
+
+    private byte[] decodeChunk(long offset) throws IOException {
+        var bis = new BufferedInputStream(metrics.countCompressed(new ChannelSliceInputStream(dumpChannel, offset)), CHUNK_BUFFER_SIZE);
+
+        // each chunk is a standalone compressed stream, don't read past its end
+        try (var is = new CompressorStreamFactory(false).createCompressorInputStream(bis)) {
+            return is.readAllBytes();
+        } catch (IOException e) {
+            throw new IOException(String.format("Unable to read file at channel position %d: %s", offset, e.getMessage()), e);
+        }
+    }
+
+    private boolean prepareNextStream() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        while (currentStream.available() == 0) {
+            if (currentStream == endRoot) {
+                return false;
+            }
+
+            var future = inFlight.poll();
+
+            if (future == null) {
+                currentStream = endRoot;
+                continue;
+            }
+
+            try {
+                currentStream = new ByteArrayInputStream(future.get());
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioe) {
+                    throw ioe;
+                } else {
+                    throw new IOException(e.getCause());
+                }
+            }
+
+            submitPending();
+        }
+
+        return true;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return currentStream.available();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!prepareNextStream()) {
+            return -1;
+        }
+
+        return currentStream.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        if (len == 0) {
+            return 0;
+        } else if (!prepareNextStream()) {
+            return -1;
+        }
+
+        return currentStream.read(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        inFlight.forEach(future -> future.cancel(true));
+        inFlight.clear();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,427 @@
+package com.github.wikibot.dumps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.wikibot.utils.Login;
+
+// content-addressed cache of remote dump files, keyed by the checksum listed in dumpstatus.json;
+// files are fetched in parallel HTTP range requests, resumed after failures, and can be read while downloading
+final class DumpDownloadCache {
+    private static final int MIN_SEGMENT_SIZE = 1 << 23;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_RETRIES = 5;
+    private static final long RETRY_DELAY_MS = 5000;
+    private static final int TIMEOUT_MS = 60000;
+
+    private final Path dir;
+    private final int segments;
+    private final Map<Path, Download> downloads = new HashMap<>(); // guarded by itself
+
+    DumpDownloadCache(Path dir, int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Illegal number of download segments: " + segments);
+        }
+
+        this.dir = Objects.requireNonNull(dir);
+        this.segments = segments;
+    }
+
+    // the checksum is either a SHA-1 (40 hex digits) or a MD5 (32 hex digits) hash
+    InputStream getInputStream(URI uri, long size, String checksum) {
+        var target = dir.resolve(checksum.substring(0, 2)).resolve(checksum);
+
+        try {
+            final Download download;
+
+            // downloads release their entry under the same lock, once their files are final
+            synchronized (downloads) {
+                if (Files.exists(target) && !Files.exists(makeProgressPath(target))) {
+                    return Files.newInputStream(target);
+                }
+
+                download = downloads.computeIfAbsent(target, t -> new Download(uri, t, size, checksum));
+            }
+
+            download.start(); // no-op if already started by another reader
+            return download.newInputStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path makeProgressPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".progress");
+    }
+
+    private static String getDigestAlgorithm(String checksum) {
+        return switch (checksum.length()) {
+            case 40 -> "SHA-1";
+            case 32 -> "MD5";
+            default -> throw new IllegalArgumentException("Unsupported checksum: " + checksum);
+        };
+    }
+
+    // progress file layout: size, number of segments, then the amount of downloaded bytes per segment
+    private class Download {
+        private final URI uri;
+        private final Path target;
+        private final Path progressPath;
+        private final long size;
+        private final String checksum;
+        private final long[] offsets;
+        private final long[] done;
+        private final String userAgent;
+        private final FileChannel data;
+        private final FileChannel progress;
+        private final ExecutorService executor;
+
+        private boolean started;
+        private int pendingSegments;
+        private boolean completed;
+        private IOException failure;
+
+        Download(URI uri, Path target, long size, String checksum) {
+            this.uri = uri;
+            this.target = target;
+            this.progressPath = makeProgressPath(target);
+            this.size = size;
+            this.checksum = checksum;
+
+            var count = (int)Math.max(Math.min(segments, size / MIN_SEGMENT_SIZE), 1);
+            offsets = new long[count + 1];
+            done = new long[count];
+
+            for (int i = 0; i <= count; i++) {
+                offsets[i] = size * i / count;
+            }
+
+            try {
+                userAgent = Login.getUserAgent();
+                Files.createDirectories(target.getParent());
+
+                if (!Files.exists(target) || !loadProgress()) {
+                    Files.deleteIfExists(progressPath);
+                    Files.deleteIfExists(target);
+                }
+
+                data = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                progress = FileChannel.open(progressPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+                var header = ByteBuffer.allocate(16 + 8 * count).putLong(size).putLong(count);
+
+                for (var value : done) {
+                    header.putLong(value);
+                }
+
+                MappedWindows.writeFully(progress, header.flip());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            executor = Executors.newFixedThreadPool(count, Thread.ofPlatform().daemon().factory());
+        }
+
+        synchronized void start() {
+            if (started) {
+                return;
+            }
+
+            started = true;
+            var resumed = 0L;
+
+            for (int i = 0; i < done.length; i++) {
+                resumed += done[i];
+
+                if (done[i] < offsets[i + 1] - offsets[i]) {
+                    var segment = i;
+                    executor.execute(() -> runSegment(segment));
+                    pendingSegments++;
+                }
+            }
+
+            System.out.printf("Downloading %s (%d bytes, %d segments, %d bytes resumed)%n", uri, size, done.length, resumed);
+
+            if (pendingSegments == 0) {
+                // verification was interrupted last time
+                executor.execute(this::finish);
+            }
+
+            executor.shutdown();
+        }
+
+        private boolean loadProgress() throws IOException {
+            if (!Files.exists(progressPath)) {
+                return false;
+            }
+
+            var buffer = ByteBuffer.wrap(Files.readAllBytes(progressPath));
+
+            if (buffer.remaining() != 16 + 8 * done.length || buffer.getLong() != size || buffer.getLong() != done.length) {
+                return false;
+            }
+
+            for (int i = 0; i < done.length; i++) {
+                done[i] = buffer.getLong();
+            }
+
+            return true;
+        }
+
+        private void runSegment(int segment) {
+            var attempts = 0;
+
+            while (true) {
+                try {
+                    fetchSegment(segment);
+                    break;
+                } catch (IOException e) {
+                    if (++attempts > MAX_RETRIES) {
+                        fail(new IOException("Download of segment %d of %s failed".formatted(segment, uri), e));
+                        return;
+                    }
+
+                    System.out.printf("Segment %d of %s interrupted (%s), retrying%n", segment, uri, e.getMessage());
+
+                    try {
+                        Thread.sleep(RETRY_DELAY_MS * attempts);
+                    } catch (InterruptedException e1) {
+                        Thread.currentThread().interrupt();
+                        fail(new InterruptedIOException());
+                        return;
+                    }
+                }
+            }
+
+            boolean last;
+
+            synchronized (this) {
+                last = --pendingSegments == 0;
+            }
+
+            if (last) {
+                finish();
+            }
+        }
+
+        private void fetchSegment(int segment) throws IOException {
+            var position = offsets[segment] + getDone(segment);
+            var end = offsets[segment + 1];
+
+            // unlike java.net.http, a read timeout detects stalled connections in the middle of the body
+            var connection = (HttpURLConnection)uri.toURL().openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestProperty("User-Agent", userAgent);
+            connection.setRequestProperty("Range", "bytes=%d-%d".formatted(position, end - 1));
+
+            try (var is = connection.getInputStream()) {
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    // range requests not supported, skip to this segment
+                    is.skipNBytes(position);
+                } else if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new IOException("Unexpected HTTP status code: " + connection.getResponseCode());
+                }
+
+                var bytes = new byte[BUFFER_SIZE];
+
+                while (position < end) {
+                    var n = is.read(bytes, 0, (int)Math.min(bytes.length, end - position));
+
+                    if (n == -1) {
+                        throw new IOException("Premature end of segment at position " + position);
+                    }
+
+                    MappedWindows.writeFully(data, ByteBuffer.wrap(bytes, 0, n), position);
+                    position += n;
+                    advance(segment, position - offsets[segment]);
+                }
+            }
+        }
+
+        private void advance(int segment, long value) throws IOException {
+            synchronized (this) {
+                done[segment] = value;
+                notifyAll();
+            }
+
+            // might lag behind the data file, which is harmless on resume
+            MappedWindows.writeFully(progress, ByteBuffer.allocate(8).putLong(value).flip(), 16 + 8L * segment);
+        }
+
+        private synchronized long getDone(int segment) {
+            return done[segment];
+        }
+
+        private void finish() {
+            try {
+                boolean verified;
+
+                try (data; progress) {
+                    data.force(true);
+                    verified = verify();
+                }
+
+                synchronized (downloads) {
+                    if (verified) {
+                        Files.delete(progressPath); // marks the file as complete
+                    } else {
+                        Files.deleteIfExists(target);
+                        Files.deleteIfExists(progressPath);
+                    }
+
+                    downloads.remove(target, this);
+                }
+
+                if (!verified) {
+                    fail(new IOException("Checksum mismatch for " + uri));
+                    return;
+                }
+
+                System.out.printf("Downloaded %s to %s%n", uri, target);
+
+                synchronized (this) {
+                    completed = true;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private boolean verify() throws IOException {
+            try {
+                var digest = MessageDigest.getInstance(getDigestAlgorithm(checksum));
+                var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                var position = 0L;
+
+                while (position < size) {
+                    var n = data.read(buffer.clear(), position);
+
+                    if (n == -1) {
+                        return false;
+                    }
+
+                    digest.update(buffer.flip());
+                    position += n;
+                }
+
+                return HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(checksum);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void fail(IOException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+
+                notifyAll();
+            }
+
+            executor.shutdownNow();
+
+            // remaining segment writers can no longer touch the files, which are kept for resuming later on
+            try {
+                data.close();
+                progress.close();
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
+            }
+
+            synchronized (downloads) {
+                downloads.remove(target, this);
+            }
+        }
+
+        // contiguous amount of downloaded bytes counted from the start of the file
+        private long getPrefix() {
+            for (int i = 0; i < done.length; i++) {
+                if (done[i] < offsets[i + 1] - offsets[i]) {
+                    return offsets[i] + done[i];
+                }
+            }
+
+            return size;
+        }
+
+        private synchronized long awaitPrefix(long position) throws IOException {
+            try {
+                while (failure == null && !completed && getPrefix() <= position) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            // on completion, the file has also passed checksum verification
+            return completed ? size : getPrefix();
+        }
+
+        InputStream newInputStream() throws IOException {
+            var channel = FileChannel.open(target, StandardOpenOption.READ);
+
+            return new InputStream() {
+                private long position;
+
+                @Override
+                public int read() throws IOException {
+                    var b = new byte[1];
+                    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    Objects.checkFromIndexSize(off, len, b.length);
+
+                    if (len == 0) {
+                        return 0;
+                    }
+
+                    if (position >= size) {
+                        awaitPrefix(size); // reports checksum errors
+                        return -1;
+                    }
+
+                    var available = awaitPrefix(position) - position;
+                    var n = channel.read(ByteBuffer.wrap(b, off, (int)Math.min(len, available)), position);
+
+                    if (n > 0) {
+                        position += n;
+                    }
+
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    channel.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.github.wikibot.dumps;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// per-stream throughput counters: compressed bytes as read from storage (including buffer read-ahead past the end
+// of multistream chunks), decompressed bytes as read by the XML parser; times are summed over all reading threads,
+// i.e. they exceed wall time on parallel streams; decompression is the time the parser waits for decompressed bytes
+// (including I/O), consumer time covers everything downstream of the reader, including later stream stages;
+// nothing is printed with a zero interval, JFR events are recorded either way
+final class DumpMetrics {
+    static final DumpMetrics DISABLED = new DumpMetrics(null, Duration.ZERO);
+
+    // shared by all streams, unclosed streams only leave a cheap task behind
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("dump-progress").daemon().factory());
+
+    private final String label;
+    private final Duration interval;
+
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder revisions = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+    private final LongAdder readerNanos = new LongAdder();
+    private final LongAdder consumerNanos = new LongAdder();
+
+    // ETA is based on compressed bytes if the total is known, otherwise on pages
+    private final LongAdder expectedBytes = new LongAdder();
+    private final LongAdder expectedPages = new LongAdder();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private ScheduledFuture<?> reporter;
+    private DumpReadEvent event;
+    private long startNanos;
+
+    DumpMetrics(String label, Duration interval) {
+        this.label = label;
+        this.interval = interval;
+    }
+
+    boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    void expectBytes(long bytes) {
+        expectedBytes.add(bytes);
+    }
+
+    void expectPages(long count) {
+        expectedPages.add(count);
+    }
+
+    InputStream countCompressed(InputStream is) {
+        return isEnabled() ? new CountingInputStream(is, compressedBytes, null) : is;
+    }
+
+    void countCompressed(long bytes) {
+        if (isEnabled()) {
+            compressedBytes.add(bytes);
+        }
+    }
+
+    InputStream countDecompressed(InputStream is) {
+        return isEnabled() ? new CountingInputStream(is, decompressedBytes, decompressionNanos) : is;
+    }
+
+    Spliterator<XMLRevision> wrap(Spliterator<XMLRevision> spliterator) {
+        return isEnabled() ? new TimingSpliterator(spliterator) : spliterator;
+    }
+
+    private void maybeStart() {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            start();
+        }
+    }
+
+    private void start() {
+        startNanos = System.nanoTime();
+        event = new DumpReadEvent();
+        event.begin();
+
+        if (!interval.isZero()) {
+            reporter = SCHEDULER.scheduleAtFixedRate(this::report, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void finish() {
+        if (!started.get() || !finished.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (reporter != null) {
+            reporter.cancel(false);
+        }
+
+        if (!interval.isZero()) {
+            var elapsed = System.nanoTime() - startNanos;
+
+            System.out.printf("Read %s in %s: %s compressed, %s decompressed, %d pages, %d revisions; %s%n",
+                              label, formatDuration(elapsed), formatBytes(compressedBytes.sum()), formatBytes(decompressedBytes.sum()),
+                              pages.sum(), revisions.sum(), formatTimeSplit());
+        }
+
+        event.end();
+
+        if (event.shouldCommit()) {
+            fill(event);
+            event.commit();
+        }
+    }
+
+    private void report() {
+        var elapsed = System.nanoTime() - startNanos;
+        var fraction = getFraction();
+        var progress = "";
+
+        if (fraction > 0) {
+            var eta = (long)(elapsed / fraction) - elapsed;
+            progress = String.format(" %.1f%% (ETA %s),", Math.min(fraction, 1.0) * 100, formatDuration(Math.max(eta, 0)));
+        }
+
+        System.out.printf("Progress %s:%s %s compressed (%s/s), %d pages, %d revisions; %s%n",
+                          label, progress, formatBytes(compressedBytes.sum()), formatBytes((long)(compressedBytes.sum() / (elapsed / 1e9))),
+                          pages.sum(), revisions.sum(), formatTimeSplit());
+
+        var progressEvent = new DumpProgressEvent();
+
+        if (progressEvent.shouldCommit()) {
+            fill(progressEvent);
+            progressEvent.progress = fraction;
+            progressEvent.commit();
+        }
+    }
+
+    private double getFraction() {
+        var bytes = expectedBytes.sum();
+
+        if (bytes > 0) {
+            return (double)compressedBytes.sum() / bytes;
+        }
+
+        var count = expectedPages.sum();
+        return count > 0 ? (double)pages.sum() / count : 0;
+    }
+
+    private long getParsingNanos() {
+        return Math.max(readerNanos.sum() - decompressionNanos.sum(), 0);
+    }
+
+    private String formatTimeSplit() {
+        var decompression = decompressionNanos.sum();
+        var parsing = getParsingNanos();
+        var consumer = consumerNanos.sum();
+        var total = Math.max(decompression + parsing + consumer, 1);
+
+        return String.format("decompression %.0f%%, parsing %.0f%%, consumers %.0f%%",
+                             100.0 * decompression / total, 100.0 * parsing / total, 100.0 * consumer / total);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+
+        var exp = (int)(Math.log(bytes) / Math.log(1024));
+        return String.format("%.1f %siB", bytes / Math.pow(1024, exp), "KMGTPE".charAt(exp - 1));
+    }
+
+    private static String formatDuration(long nanos) {
+        var seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+
+    private void fill(DumpEvent e) {
+        e.dump = label;
+        e.compressedBytes = compressedBytes.sum();
+        e.decompressedBytes = decompressedBytes.sum();
+        e.pages = pages.sum();
+        e.revisions = revisions.sum();
+        e.decompressionTime = decompressionNanos.sum();
+        e.parsingTime = getParsingNanos();
+        e.consumerTime = consumerNanos.sum();
+    }
+
+    @Category({"Wikibot", "Dumps"})
+    @StackTrace(false)
+    private static abstract class DumpEvent extends Event {
+        @Label("Dump")
+        String dump;
+
+        @Label("Compressed Bytes")
+        @DataAmount
+        long compressedBytes;
+
+        @Label("Decompressed Bytes")
+        @DataAmount
+        long decompressedBytes;
+
+        @Label("Pages")
+        long pages;
+
+        @Label("Revisions")
+        long revisions;
+
+        @Label("Decompression Time")
+        @Timespan
+        long decompressionTime;
+
+        @Label("Parsing Time")
+        @Timespan
+        long parsingTime;
+
+        @Label("Consumer Time")
+        @Timespan
+        long consumerTime;
+    }
+
+    @Name("com.github.wikibot.dumps.DumpRead")
+    @Label("Dump Read")
+    @Description("A completed dump stream, with totals")
+    private static class DumpReadEvent extends DumpEvent {}
+
+    @Name("com.github.wikibot.dumps.DumpProgress")
+    @Label("Dump Progress")
+    @Description("Periodic snapshot of a dump stream being read")
+    private static class DumpProgressEvent extends DumpEvent {
+        @Label("Progress")
+        double progress;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final LongAdder bytes;
+        private final LongAdder nanos;
+
+        CountingInputStream(InputStream in, LongAdder bytes, LongAdder nanos) {
+            super(in);
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var start = nanos != null ? System.nanoTime() : 0;
+            var b = super.read();
+
+            if (nanos != null) {
+                nanos.add(System.nanoTime() - start);
+            }
+
+            if (b != -1) {
+                bytes.increment();
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var start = nanos != null ? System.nanoTime() : 0;
+            var n = in.read(b, off, len);
+
+            if (nanos != null) {
+                nanos.add(System.nanoTime() - start);
+            }
+
+            if (n > 0) {
+                bytes.add(n);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = super.skip(n);
+            bytes.add(skipped);
+            return skipped;
+        }
+    }
+
+    // reader time is attributed on each revision rather than once per call, since forEachRemaining() may span
+    // the whole stream and progress reports would see no parsing time until the end
+    private class TimingSpliterator implements Spliterator<XMLRevision> {
+        private final Spliterator<XMLRevision> delegate;
+        private long lastPageId = -1;
+        private long checkpoint;
+
+        TimingSpliterator(Spliterator<XMLRevision> delegate) {
+            this.delegate = delegate;
+        }
+
+        private void accept(XMLRevision rev, Consumer<? super XMLRevision> action) {
+            var start = System.nanoTime();
+            readerNanos.add(start - checkpoint);
+            revisions.increment();
+
+            // revisions of a page are always contiguous
+            if (rev.getPageid() != lastPageId) {
+                lastPageId = rev.getPageid();
+                pages.increment();
+            }
+
+            try {
+                action.accept(rev);
+            } finally {
+                checkpoint = System.nanoTime();
+                consumerNanos.add(checkpoint - start);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XMLRevision> action) {
+            maybeStart();
+            checkpoint = System.nanoTime();
+            var advanced = delegate.tryAdvance(rev -> accept(rev, action));
+            readerNanos.add(System.nanoTime() - checkpoint);
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super XMLRevision> action) {
+            maybeStart();
+            checkpoint = System.nanoTime();
+            delegate.forEachRemaining(rev -> accept(rev, action));
+            readerNanos.add(System.nanoTime() - checkpoint);
+        }
+
+        @Override
+        public Spliterator<XMLRevision> trySplit() {
+            // some spliterators read ahead a batch of revisions on split
+            maybeStart();
+            var start = System.nanoTime();
+            var prefix = delegate.trySplit();
+            readerNanos.add(System.nanoTime() - start);
+            return prefix != null ? new TimingSpliterator(prefix) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics();
+        }
+
+        @Override
+        public Comparator<? super XMLRevision> getComparator() {
+            return delegate.getComparator();
+        }
+    }
+}
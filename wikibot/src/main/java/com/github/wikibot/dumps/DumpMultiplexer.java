@@ -0,0 +1,212 @@
+package com.github.wikibot.dumps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// feeds a single pass over a dump to several independent consumers, each one running on its own thread
+// (hence they need no synchronization); the parsed form of a revision (e.g. a wikitext page) is computed
+// at most once and shared among consumers that request it; a failing consumer is detached and reported
+// without affecting the others; lazy text is not supported since revisions outlive the reader's cursor
+public final class DumpMultiplexer<P> {
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 64; // batches per consumer
+
+    private final XMLDump dump;
+    private final Function<XMLRevision, ? extends P> parser;
+    private final Map<String, BiConsumer<XMLRevision, Supplier<P>>> consumers = new LinkedHashMap<>();
+
+    public DumpMultiplexer(XMLDump dump, Function<XMLRevision, ? extends P> parser) {
+        this.dump = checkEagerText(Objects.requireNonNull(dump));
+        this.parser = Objects.requireNonNull(parser);
+    }
+
+    private static XMLDump checkEagerText(XMLDump dump) {
+        if (dump.lazyText) {
+            throw new IllegalArgumentException("Lazy text is not supported by the dump multiplexer");
+        }
+
+        return dump;
+    }
+
+    public DumpMultiplexer<P> register(String name, Consumer<XMLRevision> consumer) {
+        Objects.requireNonNull(consumer);
+        return register(name, (rev, parsed) -> consumer.accept(rev));
+    }
+
+    // the supplier returns the shared parsed form of the revision, only call it if needed
+    public DumpMultiplexer<P> register(String name, BiConsumer<XMLRevision, Supplier<P>> consumer) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(consumer);
+
+        if (consumers.putIfAbsent(name, consumer) != null) {
+            throw new IllegalArgumentException("Consumer already registered: " + name);
+        }
+
+        return this;
+    }
+
+    // streams the dump once, returns failed consumers mapped to their first exception
+    public Map<String, Throwable> run() throws InterruptedException {
+        if (consumers.isEmpty()) {
+            throw new IllegalStateException("No consumers registered");
+        }
+
+        checkEagerText(dump); // might have been enabled after construction
+
+        var workers = consumers.entrySet().stream().map(e -> new Worker(e.getKey(), e.getValue())).toList();
+        var executor = Executors.newFixedThreadPool(workers.size(), Thread.ofPlatform().daemon().factory());
+        var start = System.nanoTime();
+        var count = 0L;
+        var completed = false;
+
+        workers.forEach(executor::execute);
+
+        try (var stream = dump.stream()) {
+            var batch = new ArrayList<Shared>(BATCH_SIZE);
+            var it = stream.iterator();
+
+            while (it.hasNext()) {
+                batch.add(new Shared(it.next()));
+                count++;
+
+                if (batch.size() == BATCH_SIZE) {
+                    dispatch(workers, List.copyOf(batch));
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                dispatch(workers, List.copyOf(batch));
+            }
+
+            dispatch(workers, Collections.emptyList());
+            completed = true;
+        } finally {
+            if (completed) {
+                executor.shutdown();
+            } else {
+                // reader failure or interruption, workers waiting on their queues are released by interrupts
+                executor.shutdownNow();
+            }
+        }
+
+        awaitTermination(executor);
+
+        System.out.printf("Dispatched %d revisions to %d consumers in %.1f s%n", count, workers.size(), (System.nanoTime() - start) / 1e9);
+
+        var failures = new LinkedHashMap<String, Throwable>();
+
+        for (var worker : workers) {
+            if (worker.failure != null) {
+                System.out.printf("Consumer %s failed: %s%n", worker.name, worker.failure);
+                failures.put(worker.name, worker.failure);
+            } else {
+                System.out.printf("Consumer %s: %.1f s%n", worker.name, worker.busyNanos / 1e9);
+            }
+        }
+
+        return failures;
+    }
+
+    private void dispatch(List<Worker> workers, List<Shared> batch) throws InterruptedException {
+        for (var worker : workers) {
+            worker.queue.put(batch);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws InterruptedException {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // a consumer may take long to finish its queue
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    private class Shared implements Supplier<P> {
+        private final XMLRevision revision;
+        private P parsed;
+        private RuntimeException failure;
+        private boolean done;
+
+        Shared(XMLRevision revision) {
+            this.revision = revision;
+        }
+
+        @Override
+        public synchronized P get() {
+            if (!done) {
+                try {
+                    parsed = parser.apply(revision);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+
+                done = true;
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            return parsed;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final String name;
+        private final BiConsumer<XMLRevision, Supplier<P>> consumer;
+        private final BlockingQueue<List<Shared>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile Throwable failure;
+        private long busyNanos;
+
+        Worker(String name, BiConsumer<XMLRevision, Supplier<P>> consumer) {
+            this.name = name;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<Shared> batch;
+
+                // an empty batch marks the end of the stream
+                while (!(batch = queue.take()).isEmpty()) {
+                    if (failure != null) {
+                        continue; // keep draining, the producer must not block
+                    }
+
+                    var start = System.nanoTime();
+
+                    try {
+                        for (var shared : batch) {
+                            consumer.accept(shared.revision, shared);
+                        }
+                    } catch (Throwable t) {
+                        failure = t;
+                    }
+
+                    busyNanos += System.nanoTime() - start;
+                }
+            } catch (InterruptedException e) {
+                failure = e;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
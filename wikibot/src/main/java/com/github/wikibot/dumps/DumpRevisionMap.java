@@ -0,0 +1,268 @@
+package com.github.wikibot.dumps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// page ID -> revision ID of a single dump, used to tell which pages changed between two dumps;
+// stored as varint-encoded page ID deltas (ascending) followed by varint-encoded revision IDs
+final class DumpRevisionMap {
+    private static final int MAGIC = 0x57425256; // "WBRV"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".revids";
+
+    private final long[] pageIds;
+    private final long[] revIds;
+
+    private DumpRevisionMap(long[] pageIds, long[] revIds) {
+        this.pageIds = pageIds;
+        this.revIds = revIds;
+    }
+
+    static Path makePath(Path cacheDir, String database, String dirName, String filename) {
+        return cacheDir.resolve(database).resolve(dirName).resolve(filename + EXTENSION);
+    }
+
+    static boolean isRevisionMap(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    static Optional<DumpRevisionMap> load(Path path) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        try (var dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                return Optional.empty();
+            }
+
+            var count = dis.readInt();
+            var pageIds = new long[count];
+            var revIds = new long[count];
+            var last = 0L;
+
+            for (int i = 0; i < count; i++) {
+                last += readVarLong(dis);
+                pageIds[i] = last;
+            }
+
+            for (int i = 0; i < count; i++) {
+                revIds[i] = readVarLong(dis);
+            }
+
+            return Optional.of(new DumpRevisionMap(pageIds, revIds));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void save(Path path) {
+        try {
+            Files.createDirectories(path.getParent());
+            var temp = Files.createTempFile(path.getParent(), "revids", ".tmp");
+
+            try (var dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeInt(pageIds.length);
+
+                var last = 0L;
+
+                for (var pageId : pageIds) {
+                    writeVarLong(dos, pageId - last);
+                    last = pageId;
+                }
+
+                for (var revId : revIds) {
+                    writeVarLong(dos, revId);
+                }
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Stored revision IDs of %d pages at %s%n", pageIds.length, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte((int)value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        var value = 0L;
+
+        for (int shift = 0; ; shift += 7) {
+            var b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    int size() {
+        return pageIds.length;
+    }
+
+    // -1 if the page is not present
+    long getRevid(long pageId) {
+        var index = Arrays.binarySearch(pageIds, pageId);
+        return index >= 0 ? revIds[index] : -1;
+    }
+
+    boolean isChanged(XMLRevision rev) {
+        return getRevid(rev.getPageid()) != rev.getRevid();
+    }
+
+    // pages present here, but missing from the other map (deleted or moved out of the dump)
+    long[] missingFrom(DumpRevisionMap other) {
+        var missing = new long[pageIds.length];
+        var count = 0;
+        var j = 0;
+
+        for (var pageId : pageIds) {
+            while (j < other.pageIds.length && other.pageIds[j] < pageId) {
+                j++;
+            }
+
+            if (j == other.pageIds.length || other.pageIds[j] != pageId) {
+                missing[count++] = pageId;
+            }
+        }
+
+        return Arrays.copyOf(missing, count);
+    }
+
+    static final class Recorder {
+        private final Queue<LongLongHashMap> maps = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final Path path;
+
+        Recorder(Path path) {
+            this.path = path;
+        }
+
+        // unlike statistics, splits are allowed; the map is stored once every split has been exhausted
+        Spliterator<XMLRevision> wrap(Spliterator<XMLRevision> spliterator) {
+            return new RecordingSpliterator(this, spliterator);
+        }
+
+        private LongLongHashMap register() {
+            var map = new LongLongHashMap();
+            maps.add(map);
+            pending.incrementAndGet();
+            return map;
+        }
+
+        private void exhausted() {
+            // new splits can only be made from pending spliterators, hence zero means no more revisions
+            if (pending.decrementAndGet() == 0 && completed.compareAndSet(false, true)) {
+                var merged = new LongLongHashMap();
+                maps.forEach(map -> merged.mergeAll(map, Math::max)); // history dumps: keep the newest revision
+                maps.clear();
+
+                var pageIds = merged.keys();
+                Arrays.sort(pageIds);
+
+                var revIds = Arrays.stream(pageIds).map(pageId -> merged.get(pageId, -1)).toArray();
+                new DumpRevisionMap(pageIds, revIds).save(path);
+            }
+        }
+    }
+
+    private static class RecordingSpliterator implements Spliterator<XMLRevision> {
+        private final Recorder recorder;
+        private final Spliterator<XMLRevision> delegate;
+        private final LongLongHashMap map;
+        private boolean exhausted;
+
+        RecordingSpliterator(Recorder recorder, Spliterator<XMLRevision> delegate) {
+            this.recorder = recorder;
+            this.delegate = delegate;
+            this.map = recorder.register();
+        }
+
+        private void record(XMLRevision rev) {
+            map.merge(rev.getPageid(), rev.getRevid(), Math::max);
+        }
+
+        private void markExhausted() {
+            if (!exhausted) {
+                exhausted = true;
+                recorder.exhausted();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XMLRevision> action) {
+            var advanced = delegate.tryAdvance(rev -> {
+                record(rev);
+                action.accept(rev);
+            });
+
+            if (!advanced) {
+                markExhausted();
+            }
+
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super XMLRevision> action) {
+            delegate.forEachRemaining(rev -> {
+                record(rev);
+                action.accept(rev);
+            });
+
+            markExhausted();
+        }
+
+        @Override
+        public Spliterator<XMLRevision> trySplit() {
+            var prefix = delegate.trySplit();
+            return prefix != null ? new RecordingSpliterator(recorder, prefix) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            // not SIZED, count() would skip the traversal
+            return delegate.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        }
+
+        @Override
+        public Comparator<? super XMLRevision> getComparator() {
+            return delegate.getComparator();
+        }
+    }
+}
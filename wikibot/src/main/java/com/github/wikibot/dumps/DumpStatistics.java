@@ -0,0 +1,266 @@
+package com.github.wikibot.dumps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// zone maps of a single dump file, keyed by multistream chunk offset (or 0 for the whole file)
+final class DumpStatistics {
+    private static final int MAGIC = 0x57425354; // "WBST"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".stats";
+
+    private final Map<Long, ZoneMap> zones;
+
+    private DumpStatistics(Map<Long, ZoneMap> zones) {
+        this.zones = Collections.unmodifiableMap(zones);
+    }
+
+    static Path makePath(Path cacheDir, String database, String dirName, String filename) {
+        return cacheDir.resolve(database).resolve(dirName).resolve(filename + EXTENSION);
+    }
+
+    static Optional<DumpStatistics> load(Path sidecar, Path source) {
+        if (!Files.exists(sidecar)) {
+            return Optional.empty();
+        }
+
+        try (var dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                return Optional.empty();
+            }
+
+            if (dis.readLong() != Files.size(source) || dis.readLong() != Files.getLastModifiedTime(source).toMillis()) {
+                return Optional.empty(); // stale
+            }
+
+            var count = dis.readInt();
+            var zones = new HashMap<Long, ZoneMap>(count * 2);
+
+            for (int i = 0; i < count; i++) {
+                var unit = dis.readLong();
+                zones.put(unit, new ZoneMap(dis.readLong(), dis.readLong(), dis.readLong(), dis.readLong(), dis.readLong()));
+            }
+
+            return Optional.of(new DumpStatistics(zones));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void save(Path sidecar, Path source) {
+        try {
+            Files.createDirectories(sidecar.getParent());
+            var temp = Files.createTempFile(sidecar.getParent(), "stats", ".tmp");
+
+            try (var dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeLong(Files.size(source));
+                dos.writeLong(Files.getLastModifiedTime(source).toMillis());
+                dos.writeInt(zones.size());
+
+                for (var entry : zones.entrySet()) {
+                    var zone = entry.getValue();
+                    dos.writeLong(entry.getKey());
+                    dos.writeLong(zone.minPageId());
+                    dos.writeLong(zone.maxPageId());
+                    dos.writeLong(zone.namespaces());
+                    dos.writeLong(zone.pageCount());
+                    dos.writeLong(zone.redirectCount());
+                }
+            }
+
+            Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Stored statistics of %d zones at %s%n", zones.size(), sidecar);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Optional<ZoneMap> getZone(long unit) {
+        return Optional.ofNullable(zones.get(unit));
+    }
+
+    record ZoneMap(long minPageId, long maxPageId, long namespaces, long pageCount, long redirectCount) {
+        static long namespaceBit(int ns) {
+            // the last bit is shared by all namespaces out of range, e.g. 100+ or negative ones
+            return ns >= 0 && ns < Long.SIZE - 1 ? 1L << ns : 1L << (Long.SIZE - 1);
+        }
+
+        boolean mayContainNamespace(Set<Integer> namespaceSet) {
+            return namespaceSet.stream().anyMatch(ns -> (namespaces & namespaceBit(ns)) != 0);
+        }
+
+        boolean mayContainNonRedirects() {
+            return redirectCount < pageCount;
+        }
+
+        boolean mayContainPageIds(long first, long last) {
+            return first <= maxPageId && last >= minPageId;
+        }
+    }
+
+    static final class Recorder {
+        private final Map<Long, Accumulator> accumulators = new ConcurrentHashMap<>();
+        private final AtomicLong recordedPages = new AtomicLong();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicInteger pendingSplits = new AtomicInteger();
+        private final long expectedPages;
+        private final Path sidecar;
+        private final Path source;
+
+        Recorder(Path sidecar, Path source, long expectedPages) {
+            this.sidecar = Objects.requireNonNull(sidecar);
+            this.source = Objects.requireNonNull(source);
+            this.expectedPages = expectedPages;
+        }
+
+        void record(long unit, XMLRevision rev) {
+            // each unit is fed by a single thread at a time
+            if (accumulators.computeIfAbsent(unit, k -> new Accumulator()).accept(rev)) {
+                recordedPages.incrementAndGet();
+            }
+        }
+
+        // records every element that goes through, the statistics are stored once all splits have been exhausted;
+        // each split accumulates on its own, the results are merged as they finish
+        Spliterator<XMLRevision> wrap(long unit, Spliterator<XMLRevision> spliterator) {
+            pendingSplits.incrementAndGet();
+            return new RecordingSpliterator(this, unit, spliterator);
+        }
+
+        private void finishSplit(long unit, Accumulator acc) {
+            if (acc.pageCount != 0) {
+                accumulators.merge(unit, acc, Accumulator::merge);
+            }
+
+            if (pendingSplits.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        // to be called once the source has been read up to its end; short-circuited streams must not call this
+        void complete() {
+            if (expectedPages != -1 && recordedPages.get() != expectedPages) {
+                return; // some other split is still pending
+            }
+
+            if (completed.compareAndSet(false, true)) {
+                var zones = new HashMap<Long, ZoneMap>(accumulators.size() * 2);
+                accumulators.forEach((unit, acc) -> zones.put(unit, acc.toZoneMap()));
+                new DumpStatistics(zones).save(sidecar, source);
+            }
+        }
+    }
+
+    private static class RecordingSpliterator implements Spliterator<XMLRevision> {
+        private final Recorder recorder;
+        private final long unit;
+        private final Spliterator<XMLRevision> delegate;
+        private final Accumulator acc = new Accumulator();
+        private boolean finished;
+
+        RecordingSpliterator(Recorder recorder, long unit, Spliterator<XMLRevision> delegate) {
+            this.recorder = recorder;
+            this.unit = unit;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XMLRevision> action) {
+            var advanced = delegate.tryAdvance(rev -> {
+                acc.accept(rev);
+                action.accept(rev);
+            });
+
+            if (!advanced && !finished) {
+                finished = true;
+                recorder.finishSplit(unit, acc);
+            }
+
+            return advanced;
+        }
+
+        @Override
+        public Spliterator<XMLRevision> trySplit() {
+            // the delegate keeps revisions of a page within the same split
+            var split = delegate.trySplit();
+            return split != null ? recorder.wrap(unit, split) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics() & ~Spliterator.SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super XMLRevision> getComparator() {
+            return delegate.getComparator();
+        }
+    }
+
+    private static class Accumulator {
+        long minPageId = Long.MAX_VALUE;
+        long maxPageId = Long.MIN_VALUE;
+        long namespaces;
+        long pageCount;
+        long redirectCount;
+        long lastPageId = -1;
+
+        boolean accept(XMLRevision rev) {
+            if (rev.getPageid() == lastPageId) {
+                return false; // another revision of the same page
+            }
+
+            lastPageId = rev.getPageid();
+            minPageId = Math.min(minPageId, rev.getPageid());
+            maxPageId = Math.max(maxPageId, rev.getPageid());
+            namespaces |= ZoneMap.namespaceBit(rev.getNamespace());
+            pageCount++;
+
+            if (rev.isRedirect()) {
+                redirectCount++;
+            }
+
+            return true;
+        }
+
+        Accumulator merge(Accumulator other) {
+            minPageId = Math.min(minPageId, other.minPageId);
+            maxPageId = Math.max(maxPageId, other.maxPageId);
+            namespaces |= other.namespaces;
+            pageCount += other.pageCount;
+            redirectCount += other.redirectCount;
+            return this;
+        }
+
+        ZoneMap toZoneMap() {
+            return new ZoneMap(minPageId, maxPageId, namespaces, pageCount, redirectCount);
+        }
+    }
+}
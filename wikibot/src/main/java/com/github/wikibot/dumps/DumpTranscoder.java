@@ -0,0 +1,258 @@
+package com.github.wikibot.dumps;
+
+import static org.apache.commons.text.StringEscapeUtils.unescapeXml;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+// recompresses a bzip2 dump into independently decodable gzip members of PAGES_PER_MEMBER pages each, plus an index
+// in the multistream format (offset:pageid:title), so that it can be read like a multistream dump; header and
+// footer go into separate members that are not indexed; a copy is used as long as it is not older than its source
+final class DumpTranscoder {
+    private static final int PAGES_PER_MEMBER = 100;
+    private static final String EXTENSION = ".gz";
+    private static final String INDEX_SUFFIX = "-index.txt";
+
+    private static final byte[] PAGE_START = "<page>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAGE_END = "</page>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TITLE_START = "<title>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TITLE_END = "</title>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ID_START = "<id>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ID_END = "</id>".getBytes(StandardCharsets.UTF_8);
+
+    private final InputStream source;
+    private final CountingOutputStream data;
+    private final BufferedWriter index;
+
+    private GZIPOutputStream member;
+    private boolean inFooter;
+    private long memberOffset;
+    private int memberPages;
+
+    private boolean inPage;
+    private String title;
+    private String pageId;
+
+    private final byte[] buffer = new byte[1 << 16];
+    private int bufferPos;
+    private int bufferLimit;
+
+    private byte[] line = new byte[8192];
+    private int lineLength;
+
+    private DumpTranscoder(InputStream source, OutputStream data, BufferedWriter index) {
+        this.source = source;
+        this.data = new CountingOutputStream(data);
+        this.index = index;
+    }
+
+    // copies are read as SIZED streams with per-page chunk statistics, i.e. one revision per page is assumed; hence
+    // history dumps (also incremental ones) are left alone
+    static boolean canTranscode(String filename) {
+        return filename.endsWith(".bz2") && !filename.contains("-pages-meta-hist");
+    }
+
+    static Path makeDataPath(Path cacheDir, String database, String dirName, String filename) {
+        return cacheDir.resolve(database).resolve(dirName).resolve(filename.replaceFirst("\\.bz2$", EXTENSION));
+    }
+
+    static Path makeIndexPath(Path dataPath) {
+        return dataPath.resolveSibling(dataPath.getFileName() + INDEX_SUFFIX);
+    }
+
+    // the data file is moved into place last, hence an index is always present alongside it
+    static Optional<Path> find(Path dataPath, Path source) {
+        try {
+            // not an exact match, modification times may be kept at a coarser precision (FAT, NFS, rsync without -t)
+            if (Files.exists(dataPath) && !Files.getLastModifiedTime(dataPath).toInstant().isBefore(Files.getLastModifiedTime(source).toInstant())) {
+                return Optional.of(dataPath);
+            }
+
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the decompressed source is expected to be a dump as exported by MediaWiki, i.e. with <page> and </page> tags
+    // on their own lines; text contents never contain a literal '<'
+    static void transcode(InputStream decompressed, Path dataPath, Path source) {
+        var indexPath = makeIndexPath(dataPath);
+
+        try {
+            Files.createDirectories(dataPath.getParent());
+
+            var tempData = Files.createTempFile(dataPath.getParent(), dataPath.getFileName().toString(), ".tmp");
+            var tempIndex = Files.createTempFile(dataPath.getParent(), indexPath.getFileName().toString(), ".tmp");
+
+            try {
+                System.out.println("Transcoding dump: " + dataPath);
+                var start = System.currentTimeMillis();
+
+                try (var is = decompressed;
+                     var os = new BufferedOutputStream(Files.newOutputStream(tempData), 1 << 16);
+                     var writer = Files.newBufferedWriter(tempIndex)) {
+                    new DumpTranscoder(is, os, writer).run();
+                }
+
+                Files.move(tempIndex, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(tempData, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                System.out.printf("Transcoded %s in %d seconds: %d bytes, source %d bytes%n",
+                                  source.getFileName(), (System.currentTimeMillis() - start) / 1000, Files.size(dataPath), Files.size(source));
+            } finally {
+                Files.deleteIfExists(tempData);
+                Files.deleteIfExists(tempIndex);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void run() throws IOException {
+        openMember();
+
+        while (readLine()) {
+            processLine();
+        }
+
+        member.finish();
+        member.close();
+    }
+
+    private void openMember() {
+        try {
+            memberOffset = data.getByteCount();
+            memberPages = 0;
+            member = new GZIPOutputStream(CloseShieldOutputStream.wrap(data), 1 << 16);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void nextMember() throws IOException {
+        member.finish();
+        member.close();
+        openMember();
+    }
+
+    private void processLine() throws IOException {
+        var start = skipWhitespace();
+
+        if (!inPage) {
+            if (startsWith(start, PAGE_START)) {
+                // the header is followed by the first page, full members are followed by the next one
+                if (memberOffset == 0 || inFooter || memberPages == PAGES_PER_MEMBER) {
+                    inFooter = false;
+                    nextMember();
+                }
+
+                inPage = true;
+                title = null;
+                pageId = null;
+            } else if (memberOffset != 0 && !inFooter && start != lineLength) {
+                // anything past the last page, i.e. </mediawiki>
+                inFooter = true;
+                nextMember();
+            }
+        } else if (startsWith(start, PAGE_END)) {
+            if (title == null || pageId == null) {
+                throw new IllegalStateException("Missing title or page ID in page at offset " + memberOffset);
+            }
+
+            index.write(memberOffset + ":" + pageId + ":" + title);
+            index.newLine();
+
+            inPage = false;
+            memberPages++;
+        } else if (title == null && startsWith(start, TITLE_START)) {
+            title = unescapeXml(extract(start + TITLE_START.length, TITLE_END));
+        } else if (pageId == null && startsWith(start, ID_START)) {
+            // the first <id> belongs to the page, the next ones to revisions and contributors
+            pageId = extract(start + ID_START.length, ID_END);
+        }
+
+        member.write(line, 0, lineLength);
+    }
+
+    private int skipWhitespace() {
+        var i = 0;
+
+        while (i < lineLength && Character.isWhitespace(line[i])) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private boolean startsWith(int start, byte[] tag) {
+        return lineLength - start >= tag.length && Arrays.equals(line, start, start + tag.length, tag, 0, tag.length);
+    }
+
+    private String extract(int start, byte[] endTag) {
+        for (int i = start; i <= lineLength - endTag.length; i++) {
+            if (Arrays.equals(line, i, i + endTag.length, endTag, 0, endTag.length)) {
+                return new String(line, start, i - start, StandardCharsets.UTF_8);
+            }
+        }
+
+        throw new IllegalStateException("Unterminated element: " + new String(line, 0, lineLength, StandardCharsets.UTF_8).strip());
+    }
+
+    // lines are kept with their terminator, texts may span many of them
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+
+        while (true) {
+            if (bufferPos == bufferLimit) {
+                bufferLimit = source.read(buffer);
+                bufferPos = 0;
+
+                if (bufferLimit == -1) {
+                    bufferLimit = 0;
+                    return lineLength != 0;
+                }
+            }
+
+            var end = bufferPos;
+
+            while (end < bufferLimit && buffer[end] != '\n') {
+                end++;
+            }
+
+            var found = end < bufferLimit;
+
+            if (found) {
+                end++;
+            }
+
+            var length = end - bufferPos;
+
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            }
+
+            System.arraycopy(buffer, bufferPos, line, lineLength, length);
+            lineLength += length;
+            bufferPos = end;
+
+            if (found) {
+                return true;
+            }
+        }
+    }
+}
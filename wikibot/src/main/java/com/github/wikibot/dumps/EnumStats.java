@@ -8,8 +8,13 @@ public class EnumStats<E extends Enum<E>> {
     private final long[] storage;
 
     EnumStats(Class<E> clazz) {
+        this(clazz, new long[clazz.getEnumConstants().length]);
+    }
+
+    // a view backed by the given array, e.g. a row of a CompoundTimeline
+    EnumStats(Class<E> clazz, long[] storage) {
         constants = clazz.getEnumConstants();
-        storage = new long[constants.length];
+        this.storage = storage;
     }
 
     public long get(E e) {
@@ -33,8 +38,12 @@ public class EnumStats<E extends Enum<E>> {
     }
 
     public void combine(EnumStats<E> other) {
+        other.addTo(storage);
+    }
+
+    void addTo(long[] target) {
         for (int i = 0; i < storage.length; i++) {
-            storage[i] += other.storage[i];
+            target[i] += storage[i];
         }
     }
 
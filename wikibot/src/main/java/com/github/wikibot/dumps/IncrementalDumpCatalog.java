@@ -0,0 +1,121 @@
+package com.github.wikibot.dumps;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// several days of incremental dumps treated as one: stubs are merged into a single map of the newest revision
+// per page, which then drives a scan of all pages dumps that only emits those revisions
+public final class IncrementalDumpCatalog {
+    private final List<Day> days;
+    private boolean lazyText;
+
+    private record Day(LocalDate date, XMLDump stubs, XMLDump pages) {}
+
+    private IncrementalDumpCatalog(List<Day> days) {
+        this.days = days;
+    }
+
+    // stubs and pages dumps of each day within [startDate, endDate), days lacking either of them are skipped
+    public static IncrementalDumpCatalog fetch(XMLDumpConfig stubsConfig, XMLDumpConfig pagesConfig, LocalDate startDate, LocalDate endDate) {
+        Objects.requireNonNull(stubsConfig);
+        Objects.requireNonNull(pagesConfig);
+
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must not precede startDate");
+        }
+
+        var days = new ArrayList<Day>();
+
+        for (var date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            var optStubs = stubsConfig.at(date).fetch();
+            var optPages = pagesConfig.at(date).fetch();
+
+            if (optStubs.isPresent() && optPages.isPresent()) {
+                days.add(new Day(date, optStubs.get(), optPages.get()));
+            } else {
+                System.out.printf("Incomplete incremental dump for %s, skipping%n", date);
+            }
+        }
+
+        System.out.printf("Found %d incremental dumps between %s and %s%n", days.size(), startDate, endDate);
+        return new IncrementalDumpCatalog(days);
+    }
+
+    public List<LocalDate> getDates() {
+        return days.stream().map(Day::date).toList();
+    }
+
+    public boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    // applies to the pages dumps, see XMLDump.lazyText()
+    public IncrementalDumpCatalog lazyText() {
+        lazyText = true;
+        return this;
+    }
+
+    // page ID -> newest revision ID across all stubs dumps, considering only revisions that pass the filter
+    public LongLongHashMap retrieveNewestRevisions(Predicate<XMLRevision> filter) {
+        Objects.requireNonNull(filter);
+
+        // one day per thread, revision IDs are monotonic hence the newest one is the highest
+        var newest = days.parallelStream()
+            .map(day -> {
+                var map = new LongLongHashMap();
+
+                try (var stream = day.stubs().stream()) {
+                    stream.filter(filter).forEach(rev -> map.merge(rev.getPageid(), rev.getRevid(), Math::max));
+                }
+
+                return map;
+            })
+            .reduce((a, b) -> {
+                a.mergeAll(b, Math::max);
+                return a;
+            })
+            .orElseGet(LongLongHashMap::new);
+
+        System.out.printf("Retrieved %d incr dump revisions.%n", newest.size());
+        return newest;
+    }
+
+    // revisions from the pages dumps that are the newest of their page; in parallel, each day is read by one thread
+    public Stream<XMLRevision> stream(LongLongHashMap newestRevisions) {
+        Objects.requireNonNull(newestRevisions);
+
+        var streams = new ConcurrentLinkedQueue<Stream<XMLRevision>>();
+
+        var sources = days.stream()
+            .<Supplier<Spliterator<XMLRevision>>>map(day -> () -> {
+                var dump = day.pages();
+
+                if (lazyText) {
+                    dump.lazyText();
+                }
+
+                var stream = dump.stream();
+                streams.add(stream);
+                return stream.spliterator();
+            })
+            .toList();
+
+        var sp = new ConcatenatedSpliterator<>(sources, StAXDumpReader.BASIC_CHARACTERISTICS);
+
+        return StreamSupport.stream(sp, false)
+            .onClose(() -> streams.forEach(Stream::close))
+            .filter(rev -> newestRevisions.get(rev.getPageid(), -1) == rev.getRevid());
+    }
+
+    public Stream<XMLRevision> stream(Predicate<XMLRevision> stubsFilter) {
+        return stream(retrieveNewestRevisions(stubsFilter));
+    }
+}
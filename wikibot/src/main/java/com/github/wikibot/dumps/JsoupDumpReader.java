@@ -71,6 +71,12 @@ public final class JsoupDumpReader {
             }
         } catch (IndexOutOfBoundsException e) {}
 
+        var sha1 = revision.getElementsByTag("sha1");
+
+        if (!sha1.isEmpty()) {
+            rev.sha1 = sha1.get(0).text();
+        }
+
         Element text = revision.getElementsByTag("text").get(0);
 
         // revdeleted or missing (stubs.xml)
@@ -0,0 +1,177 @@
+package com.github.wikibot.dumps;
+
+import java.util.Arrays;
+import java.util.function.LongBinaryOperator;
+
+// open addressing with linear probing, no boxing; not thread-safe
+public final class LongLongHashMap {
+    private static final long FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    // the free key marks empty slots, hence it is stored apart
+    private boolean hasFreeKey;
+    private long freeKeyValue;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Negative expected size: " + expectedSize);
+        }
+
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        var capacity = Math.max((long)Math.ceil(expectedSize / LOAD_FACTOR), 2);
+        var tableSize = Long.highestOneBit(capacity - 1) << 1;
+
+        if (tableSize > 1 << 30) {
+            throw new IllegalArgumentException("Expected size too large: " + expectedSize);
+        }
+
+        return (int)tableSize;
+    }
+
+    private void allocate(int tableSize) {
+        keys = new long[tableSize];
+        values = new long[tableSize];
+        mask = tableSize - 1;
+        threshold = (int)(tableSize * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        var h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private int indexOf(long key) {
+        var index = hash(key) & mask;
+
+        while (keys[index] != FREE_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+
+        return keys[indexOf(key)] != FREE_KEY;
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+
+        var index = indexOf(key);
+        return keys[index] != FREE_KEY ? values[index] : defaultValue;
+    }
+
+    public void put(long key, long value) {
+        merge(key, value, (oldValue, newValue) -> newValue);
+    }
+
+    // stores the value if absent, otherwise the result of applying the function to the old and new values
+    public void merge(long key, long value, LongBinaryOperator function) {
+        if (key == FREE_KEY) {
+            freeKeyValue = hasFreeKey ? function.applyAsLong(freeKeyValue, value) : value;
+
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+
+            return;
+        }
+
+        var index = indexOf(key);
+
+        if (keys[index] != FREE_KEY) {
+            values[index] = function.applyAsLong(values[index], value);
+            return;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+
+        if (++size > threshold) {
+            rehash();
+        }
+    }
+
+    public void mergeAll(LongLongHashMap other, LongBinaryOperator function) {
+        if (other.hasFreeKey) {
+            merge(FREE_KEY, other.freeKeyValue, function);
+        }
+
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != FREE_KEY) {
+                merge(other.keys[i], other.values[i], function);
+            }
+        }
+    }
+
+    private void rehash() {
+        var oldKeys = keys;
+        var oldValues = values;
+
+        allocate(keys.length << 1);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                var index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    public long[] keys() {
+        var result = new long[size];
+        var n = 0;
+
+        if (hasFreeKey) {
+            result[n++] = FREE_KEY;
+        }
+
+        for (var key : keys) {
+            if (key != FREE_KEY) {
+                result[n++] = key;
+            }
+        }
+
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LongLongHashMap[size=%d]", size);
+    }
+}
@@ -0,0 +1,402 @@
+package com.github.wikibot.dumps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+// Binary sidecar of a multistream index file, created once and memory-mapped on subsequent runs:
+//   header | chunk offsets | pages per chunk | page IDs (ascending) | chunk per page | title offsets | title hash table | titles (UTF-8)
+final class MappedMultistreamIndex {
+    private static final int MAGIC = 0x57424958; // "WBIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final String EXTENSION = ".idx";
+    private static final Pattern PATT_DATE = Pattern.compile("\\d{8}");
+
+    private final MappedWindows data;
+    private final int chunkCount;
+    private final long pageCount;
+    private final long hashCapacity;
+
+    private final long chunkOffsetsPos;
+    private final long chunkSizesPos;
+    private final long pageIdsPos;
+    private final long pageChunksPos;
+    private final long titleOffsetsPos;
+    private final long hashPos;
+    private final long titlesPos;
+
+    private MappedMultistreamIndex(MappedWindows data) {
+        this.data = data;
+
+        chunkCount = getInt(24);
+        pageCount = getLong(32);
+        hashCapacity = getLong(40);
+
+        chunkOffsetsPos = HEADER_SIZE;
+        chunkSizesPos = chunkOffsetsPos + 8L * chunkCount;
+        pageIdsPos = MappedWindows.align(chunkSizesPos + 4L * chunkCount);
+        pageChunksPos = pageIdsPos + 8L * pageCount;
+        titleOffsetsPos = MappedWindows.align(pageChunksPos + 4L * pageCount);
+        hashPos = titleOffsetsPos + 8L * (pageCount + 1);
+        titlesPos = MappedWindows.align(hashPos + 4L * hashCapacity);
+    }
+
+    static MappedMultistreamIndex obtain(Path cacheDir, String database, String dirName, Path indexFile, Supplier<InputStream> indexSupplier) {
+        var sidecar = cacheDir.resolve(database).resolve(dirName).resolve(indexFile.getFileName() + EXTENSION);
+
+        try {
+            var sourceSize = Files.size(indexFile);
+            var sourceTime = Files.getLastModifiedTime(indexFile).toMillis();
+
+            if (Files.exists(sidecar)) {
+                var index = open(sidecar);
+
+                if (index == null) {
+                    // written by another version of this class, or truncated
+                    System.out.println("Discarding unrecognized index sidecar: " + sidecar);
+                    Files.delete(sidecar);
+                } else if (index.getLong(8) == sourceSize && index.getLong(16) == sourceTime) {
+                    return index;
+                }
+            }
+
+            Files.createDirectories(sidecar.getParent());
+            pruneStaleDirectories(cacheDir.resolve(database), dirName);
+
+            System.out.println("Building index sidecar: " + sidecar);
+
+            try (var is = indexSupplier.get()) {
+                build(is, sidecar, sourceSize, sourceTime);
+            }
+
+            var index = open(sidecar);
+
+            if (index == null) {
+                throw new IOException("Unrecognized index sidecar: " + sidecar);
+            }
+
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // sidecars of several files may be built concurrently
+    private static synchronized void pruneStaleDirectories(Path databaseDir, String dirName) throws IOException {
+        if (!PATT_DATE.matcher(dirName).matches()) {
+            return; // e.g. "latest"
+        }
+
+        try (var dirs = Files.list(databaseDir)) {
+            var stale = dirs
+                .filter(Files::isDirectory)
+                .map(dir -> dir.getFileName().toString())
+                .filter(name -> PATT_DATE.matcher(name).matches() && name.compareTo(dirName) < 0)
+                .map(databaseDir::resolve)
+                .toList();
+
+            for (var dir : stale) {
+                try (var files = Files.walk(dir)) {
+                    for (var path : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                        if (Files.isDirectory(path)) {
+                            try (var contents = Files.list(path)) {
+                                if (contents.findAny().isEmpty()) {
+                                    Files.delete(path);
+                                }
+                            }
+                        } else if (!DumpRevisionMap.isRevisionMap(path)) {
+                            // revision maps are kept for delta processing against older dumps
+                            Files.delete(path);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // returns null on a magic number, version or file size mismatch
+    private static MappedMultistreamIndex open(Path sidecar) throws IOException {
+        var fileSize = Files.size(sidecar);
+
+        if (fileSize < HEADER_SIZE) {
+            return null;
+        }
+
+        var index = new MappedMultistreamIndex(MappedWindows.map(sidecar));
+
+        if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION || index.titlesPos + index.getLong(48) != fileSize) {
+            return null;
+        }
+
+        return index;
+    }
+
+    private static void build(InputStream indexStream, Path sidecar, long sourceSize, long sourceTime) throws IOException {
+        var dir = sidecar.getParent();
+        var idsFile = Files.createTempFile(dir, "ids", ".tmp");
+        var chunksFile = Files.createTempFile(dir, "chunks", ".tmp");
+        var titleOffsetsFile = Files.createTempFile(dir, "titleoffsets", ".tmp");
+        var titlesFile = Files.createTempFile(dir, "titles", ".tmp");
+        var outputFile = Files.createTempFile(dir, "index", ".tmp");
+
+        try {
+            var chunkOffsets = new long[1 << 16];
+            var chunkSizes = new int[1 << 16];
+            var chunkCount = 0;
+            var pageCount = 0L;
+            var titlesSize = 0L;
+
+            try (var ids = MappedWindows.newDataOutputStream(idsFile);
+                 var chunks = MappedWindows.newDataOutputStream(chunksFile);
+                 var titleOffsets = MappedWindows.newDataOutputStream(titleOffsetsFile);
+                 var titles = MappedWindows.newDataOutputStream(titlesFile);
+                 var reader = new BufferedReader(new InputStreamReader(decompress(indexStream), StandardCharsets.UTF_8))) {
+                var lastOffset = -1L;
+                var lastId = Long.MIN_VALUE;
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    var firstSeparator = line.indexOf(':');
+                    var secondSeparator = line.indexOf(':', firstSeparator + 1);
+
+                    if (firstSeparator == -1 || secondSeparator == -1) {
+                        throw new IOException("Unexpected: " + line);
+                    }
+
+                    var offset = Long.parseLong(line, 0, firstSeparator, 10);
+                    var id = Long.parseLong(line, firstSeparator + 1, secondSeparator, 10);
+                    var title = line.substring(secondSeparator + 1).getBytes(StandardCharsets.UTF_8);
+
+                    if (id <= lastId) {
+                        // binary search relies on the dump order, which follows page IDs
+                        throw new IOException("Index file is not sorted by page ID: " + line);
+                    }
+
+                    if (offset != lastOffset) {
+                        if (chunkCount == chunkOffsets.length) {
+                            chunkOffsets = Arrays.copyOf(chunkOffsets, chunkCount * 2);
+                            chunkSizes = Arrays.copyOf(chunkSizes, chunkCount * 2);
+                        }
+
+                        chunkOffsets[chunkCount++] = offset;
+                        lastOffset = offset;
+                    }
+
+                    chunkSizes[chunkCount - 1]++;
+
+                    ids.writeLong(id);
+                    chunks.writeInt(chunkCount - 1);
+                    titleOffsets.writeLong(titlesSize);
+                    titles.write(title);
+
+                    titlesSize += title.length;
+                    lastId = id;
+                    pageCount++;
+                }
+
+                titleOffsets.writeLong(titlesSize);
+            }
+
+            var hashCapacity = Long.highestOneBit(Math.max(pageCount * 2, 16) - 1) << 1; // load factor <= 0.5
+
+            try (var out = FileChannel.open(outputFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceTime);
+                header.putInt(chunkCount).putInt(0).putLong(pageCount).putLong(hashCapacity).putLong(titlesSize);
+                MappedWindows.writeFully(out, header.rewind());
+
+                var chunkSection = ByteBuffer.allocate(12 * chunkCount);
+                chunkSection.asLongBuffer().put(chunkOffsets, 0, chunkCount);
+                chunkSection.position(8 * chunkCount).asIntBuffer().put(chunkSizes, 0, chunkCount);
+                MappedWindows.writeFully(out, chunkSection.rewind());
+                MappedWindows.pad(out);
+
+                MappedWindows.transfer(idsFile, out);
+                MappedWindows.transfer(chunksFile, out);
+                MappedWindows.pad(out);
+                MappedWindows.transfer(titleOffsetsFile, out);
+
+                var hashStart = out.position();
+                var zeros = ByteBuffer.allocate(1 << 20);
+
+                for (var remaining = 4 * hashCapacity; remaining > 0; remaining -= zeros.limit()) {
+                    MappedWindows.writeFully(out, zeros.clear().limit((int)Math.min(zeros.capacity(), remaining)));
+                }
+
+                MappedWindows.pad(out);
+                MappedWindows.transfer(titlesFile, out);
+
+                var index = new MappedMultistreamIndex(MappedWindows.map(out, FileChannel.MapMode.READ_ONLY, 0, out.size()));
+                var slots = MappedWindows.map(out, FileChannel.MapMode.READ_WRITE, hashStart, 4 * hashCapacity);
+                index.fillHashTable(slots);
+                slots.force();
+            }
+
+            Files.move(outputFile, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            for (var path : Arrays.asList(idsFile, chunksFile, titleOffsetsFile, titlesFile, outputFile)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static InputStream decompress(InputStream is) {
+        var bis = new BufferedInputStream(is);
+
+        try {
+            return new CompressorStreamFactory().createCompressorInputStream(bis);
+        } catch (CompressorException e) {
+            return bis;
+        }
+    }
+
+    private void fillHashTable(MappedWindows slots) {
+        var mask = hashCapacity - 1;
+
+        for (long i = 0; i < pageCount; i++) {
+            var start = titlesPos + getLong(titleOffsetsPos + 8 * i);
+            var end = titlesPos + getLong(titleOffsetsPos + 8 * (i + 1));
+            var slot = hash(start, end) & mask;
+
+            while (slots.getInt(4 * slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            // store the page position plus one, zero marks an empty slot
+            slots.putInt(4 * slot, (int)(i + 1));
+        }
+    }
+
+    private int getInt(long pos) {
+        return data.getInt(pos);
+    }
+
+    private long getLong(long pos) {
+        return data.getLong(pos);
+    }
+
+    // FNV-1a
+    private long hash(long start, long end) {
+        var h = 0xcbf29ce484222325L;
+
+        for (var pos = start; pos < end; pos++) {
+            h = (h ^ (data.get(pos) & 0xff)) * 0x100000001b3L;
+        }
+
+        return h ^ (h >>> 32);
+    }
+
+    private static long hash(byte[] bytes) {
+        var h = 0xcbf29ce484222325L;
+
+        for (var b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+
+        return h ^ (h >>> 32);
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    long getPageCount() {
+        return pageCount;
+    }
+
+    long getChunkOffset(int chunk) {
+        return getLong(chunkOffsetsPos + 8L * chunk);
+    }
+
+    int getChunkPageCount(int chunk) {
+        return getInt(chunkSizesPos + 4L * chunk);
+    }
+
+    int findChunkByPageId(long id) {
+        var low = 0L;
+        var high = pageCount - 1;
+
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var value = getLong(pageIdsPos + 8 * mid);
+
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return getInt(pageChunksPos + 4 * mid);
+            }
+        }
+
+        return -1;
+    }
+
+    int findChunkByTitle(String title) {
+        var bytes = Objects.requireNonNull(title).getBytes(StandardCharsets.UTF_8);
+        var mask = hashCapacity - 1;
+        var slot = hash(bytes) & mask;
+        int entry;
+
+        while ((entry = getInt(hashPos + 4 * slot)) != 0) {
+            var i = entry - 1L;
+            var start = titlesPos + getLong(titleOffsetsPos + 8 * i);
+            var end = titlesPos + getLong(titleOffsetsPos + 8 * (i + 1));
+
+            if (equalsAt(start, end, bytes)) {
+                return getInt(pageChunksPos + 4 * i);
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private boolean equalsAt(long start, long end, byte[] bytes) {
+        if (end - start != bytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < bytes.length; i++) {
+            if (data.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    BitSet selectChunksByPageIds(LongStream ids) {
+        var chunks = new BitSet(chunkCount);
+        ids.mapToInt(this::findChunkByPageId).filter(chunk -> chunk != -1).forEach(chunks::set);
+        return chunks;
+    }
+
+    BitSet selectChunksByTitles(Stream<String> titles) {
+        var chunks = new BitSet(chunkCount);
+        titles.mapToInt(this::findChunkByTitle).filter(chunk -> chunk != -1).forEach(chunks::set);
+        return chunks;
+    }
+}
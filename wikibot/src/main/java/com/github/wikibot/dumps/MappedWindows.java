@@ -0,0 +1,111 @@
+package com.github.wikibot.dumps;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// a file region mapped in 1 GiB windows, plus helpers for writing aligned binary sidecars
+final class MappedWindows {
+    private static final int WINDOW_BITS = 30; // a multiple of 8 keeps aligned reads within one window
+    private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+
+    private final MappedByteBuffer[] windows;
+
+    private MappedWindows(MappedByteBuffer[] windows) {
+        this.windows = windows;
+    }
+
+    static MappedWindows map(FileChannel fch, FileChannel.MapMode mode, long position, long size) throws IOException {
+        var count = (int)((size + (1L << WINDOW_BITS) - 1) >>> WINDOW_BITS);
+        var windows = new MappedByteBuffer[count];
+
+        for (int i = 0; i < count; i++) {
+            var start = (long)i << WINDOW_BITS;
+            windows[i] = fch.map(mode, position + start, Math.min(1L << WINDOW_BITS, size - start));
+        }
+
+        return new MappedWindows(windows);
+    }
+
+    static MappedWindows map(Path path) throws IOException {
+        try (var fch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(fch, FileChannel.MapMode.READ_ONLY, 0, fch.size());
+        }
+    }
+
+    byte get(long pos) {
+        return windows[(int)(pos >>> WINDOW_BITS)].get((int)(pos & WINDOW_MASK));
+    }
+
+    int getInt(long pos) {
+        return windows[(int)(pos >>> WINDOW_BITS)].getInt((int)(pos & WINDOW_MASK));
+    }
+
+    long getLong(long pos) {
+        return windows[(int)(pos >>> WINDOW_BITS)].getLong((int)(pos & WINDOW_MASK));
+    }
+
+    void putInt(long pos, int value) {
+        windows[(int)(pos >>> WINDOW_BITS)].putInt((int)(pos & WINDOW_MASK), value);
+    }
+
+    byte[] getBytes(long start, long end) {
+        var bytes = new byte[(int)(end - start)];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = get(start + i);
+        }
+
+        return bytes;
+    }
+
+    void force() {
+        for (var window : windows) {
+            window.force();
+        }
+    }
+
+    static DataOutputStream newDataOutputStream(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+
+    static void writeFully(FileChannel fch, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            fch.write(buffer);
+        }
+    }
+
+    static void writeFully(FileChannel fch, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += fch.write(buffer, position);
+        }
+    }
+
+    static void pad(FileChannel fch) throws IOException {
+        var position = fch.position();
+        writeFully(fch, ByteBuffer.allocate((int)(align(position) - position)));
+    }
+
+    static void transfer(Path source, FileChannel target) throws IOException {
+        try (var in = FileChannel.open(source, StandardOpenOption.READ)) {
+            var size = in.size();
+            var position = target.position();
+
+            for (var done = 0L; done < size; ) {
+                done += target.transferFrom(in, position + done, size - done);
+            }
+
+            target.position(position + size);
+        }
+    }
+
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
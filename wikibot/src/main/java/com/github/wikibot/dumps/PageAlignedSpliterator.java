@@ -0,0 +1,118 @@
+package com.github.wikibot.dumps;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+// like Spliterators.spliterator(iterator, ...), but batches are extended until the end of the last page,
+// hence all revisions of a page are processed by the same thread; hasNext() must be followed by next()
+class PageAlignedSpliterator implements Spliterator<XMLRevision> {
+    private static final int BATCH_UNIT = 1 << 10;
+    private static final int MAX_BATCH = 1 << 25;
+
+    private final Iterator<XMLRevision> iterator;
+    private final int characteristics;
+    private long estimateSize;
+    private int batch;
+    private XMLRevision pending; // first revision of the next page, already read from the iterator
+
+    PageAlignedSpliterator(Iterator<XMLRevision> iterator, long estimateSize) {
+        this.iterator = iterator;
+
+        if (estimateSize != 0) {
+            this.estimateSize = estimateSize;
+            this.characteristics = StAXDumpReader.BASIC_CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED;
+        } else {
+            this.estimateSize = Long.MAX_VALUE;
+            this.characteristics = StAXDumpReader.BASIC_CHARACTERISTICS;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super XMLRevision> action) {
+        if (pending != null) {
+            var rev = pending;
+            pending = null;
+            action.accept(rev);
+            return true;
+        } else if (iterator.hasNext()) {
+            action.accept(iterator.next());
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super XMLRevision> action) {
+        if (pending != null) {
+            var rev = pending;
+            pending = null;
+            action.accept(rev);
+        }
+
+        iterator.forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<XMLRevision> trySplit() {
+        if (estimateSize <= 1) {
+            return null;
+        }
+
+        var size = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+        var revisions = new ArrayList<XMLRevision>(size);
+
+        if (pending != null) {
+            revisions.add(pending);
+            pending = null;
+        }
+
+        while (revisions.size() < size && iterator.hasNext()) {
+            revisions.add(iterator.next());
+        }
+
+        if (revisions.isEmpty()) {
+            return null;
+        }
+
+        var pageid = revisions.get(revisions.size() - 1).getPageid();
+
+        while (iterator.hasNext()) {
+            var rev = iterator.next();
+
+            if (rev.getPageid() != pageid) {
+                pending = rev;
+                break;
+            }
+
+            revisions.add(rev);
+        }
+
+        batch = size;
+
+        if (estimateSize != Long.MAX_VALUE) {
+            estimateSize = Math.max(estimateSize - revisions.size(), 1);
+        }
+
+        return Spliterators.spliterator(revisions.toArray(), characteristics);
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimateSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public Comparator<? super XMLRevision> getComparator() {
+        return null; // natural order
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.wikibot.dumps;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// revisions of a single page, in dump order; they may be read from the dump as they are iterated, hence a history
+// can be traversed only once and only within the stream operation it has been passed to
+public final class PageHistory {
+    private final long pageid;
+    private final String title;
+    private final int namespace;
+    private final Iterator<XMLRevision> revisions;
+    private boolean consumed;
+    private boolean closed;
+
+    PageHistory(XMLRevision first, Iterator<XMLRevision> revisions) {
+        this.pageid = first.getPageid();
+        this.title = first.getTitle();
+        this.namespace = first.getNamespace();
+        this.revisions = Objects.requireNonNull(revisions);
+    }
+
+    public long getPageid() {
+        return pageid;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getNamespace() {
+        return namespace;
+    }
+
+    public Stream<XMLRevision> revisions() {
+        if (closed) {
+            throw new IllegalStateException("Page history is no longer available: " + title);
+        }
+
+        if (consumed) {
+            throw new IllegalStateException("Page history already consumed: " + title);
+        }
+
+        consumed = true;
+        var sp = Spliterators.spliteratorUnknownSize(revisions, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(sp, false);
+    }
+
+    // pairs of consecutive revisions, the first one is paired with null; only these two are held at a time
+    public void forEachConsecutive(BiConsumer<XMLRevision, XMLRevision> action) {
+        Objects.requireNonNull(action);
+        var previous = new XMLRevision[1];
+
+        revisions().forEachOrdered(rev -> {
+            action.accept(previous[0], rev);
+            previous[0] = rev;
+        });
+    }
+
+    // reads past the remaining revisions, if any, so that the next page can be reached
+    void close() {
+        closed = true;
+
+        while (revisions.hasNext()) {
+            revisions.next();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[pageid=%d, title=%s, ns=%d]", pageid, title, namespace);
+    }
+}
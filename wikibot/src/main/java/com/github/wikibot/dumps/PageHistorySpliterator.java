@@ -0,0 +1,333 @@
+package com.github.wikibot.dumps;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// groups a revision source into page histories; on parallel streams, pages of up to `window` revisions are buffered
+// into batches, while a longer page is handed over to a split of its own along with the source, which the remaining
+// splits wait for; hence no more than `window` revisions of a page are held in memory at once
+class PageHistorySpliterator implements Spliterator<PageHistory> {
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    private static final int BATCH_UNIT = 1 << 10; // revisions
+    private static final int MAX_BATCH = 1 << 14;
+    private static final long HANDOFF_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+    private final RevisionSource source;
+    private final int window;
+    private int batch;
+    private PageHistory pending; // long page, read up to its window
+    private Handoff handoff;
+
+    PageHistorySpliterator(Spliterator<XMLRevision> revisions, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Illegal page history window: " + window);
+        }
+
+        this.source = new RevisionSource(Objects.requireNonNull(revisions));
+        this.window = window;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super PageHistory> action) {
+        awaitHandoff(0);
+        var page = pending != null ? pending : readPage();
+        pending = null;
+
+        if (page == null) {
+            return false;
+        }
+
+        deliver(page, action);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super PageHistory> action) {
+        awaitHandoff(0);
+
+        if (pending != null) {
+            var page = pending;
+            pending = null;
+            deliver(page, action);
+        }
+
+        PageHistory page;
+
+        while ((page = readPage()) != null) {
+            deliver(page, action);
+        }
+    }
+
+    @Override
+    public Spliterator<PageHistory> trySplit() {
+        if (awaitHandoff(HANDOFF_TIMEOUT)) {
+            // the long page is ours again, process everything else sequentially
+            return null;
+        }
+
+        if (pending != null) {
+            return handOver();
+        }
+
+        var size = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+        var pages = new ArrayList<PageHistory>();
+        var count = 0;
+
+        while (count < size && source.peek() != null) {
+            var first = source.peek();
+            var revisions = new ArrayList<XMLRevision>();
+
+            while (revisions.size() < window && source.peekPageid() == first.getPageid()) {
+                revisions.add(source.poll());
+            }
+
+            if (source.peekPageid() == first.getPageid()) {
+                pending = new PageHistory(first, new PageRevisions(revisions, first.getPageid()));
+                break;
+            }
+
+            pages.add(new PageHistory(first, revisions.iterator()));
+            count += revisions.size();
+        }
+
+        batch = size;
+
+        if (pages.isEmpty()) {
+            return pending != null ? handOver() : null;
+        }
+
+        return Spliterators.spliterator(pages, CHARACTERISTICS);
+    }
+
+    private Spliterator<PageHistory> handOver() {
+        handoff = new Handoff(pending);
+        pending = null;
+        return new HandoffSpliterator(handoff);
+    }
+
+    // returns true if the page has been taken back
+    private boolean awaitHandoff(long timeoutNanos) {
+        if (handoff == null) {
+            return false;
+        }
+
+        var h = handoff;
+        handoff = null;
+
+        if (h.awaitOrReclaim(timeoutNanos)) {
+            pending = h.page;
+            return true;
+        }
+
+        return false;
+    }
+
+    private PageHistory readPage() {
+        var first = source.peek();
+        return first != null ? new PageHistory(first, new PageRevisions(List.of(), first.getPageid())) : null;
+    }
+
+    private static void deliver(PageHistory page, Consumer<? super PageHistory> action) {
+        try {
+            action.accept(page);
+        } finally {
+            page.close();
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    private static class RevisionSource implements Consumer<XMLRevision> {
+        private final Spliterator<XMLRevision> delegate;
+        private XMLRevision next;
+        private boolean exhausted;
+
+        RevisionSource(Spliterator<XMLRevision> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void accept(XMLRevision rev) {
+            next = rev;
+        }
+
+        XMLRevision peek() {
+            if (next == null && !exhausted && !delegate.tryAdvance(this)) {
+                exhausted = true;
+            }
+
+            return next;
+        }
+
+        long peekPageid() {
+            var rev = peek();
+            return rev != null ? rev.getPageid() : -1;
+        }
+
+        XMLRevision poll() {
+            var rev = peek();
+            next = null;
+            return rev;
+        }
+    }
+
+    // buffered head of a page, followed by the revisions still to be read from the source
+    private class PageRevisions implements Iterator<XMLRevision> {
+        private final List<XMLRevision> head;
+        private final long pageid;
+        private int index;
+
+        PageRevisions(List<XMLRevision> head, long pageid) {
+            this.head = head;
+            this.pageid = pageid;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < head.size() || source.peekPageid() == pageid;
+        }
+
+        @Override
+        public XMLRevision next() {
+            if (index < head.size()) {
+                var rev = head.get(index);
+                head.set(index++, null); // don't hold already visited revisions
+                return rev;
+            }
+
+            if (source.peekPageid() != pageid) {
+                throw new NoSuchElementException();
+            }
+
+            return source.poll();
+        }
+    }
+
+    private static class Handoff {
+        private enum State { NEW, RUNNING, DONE, RECLAIMED }
+
+        final PageHistory page;
+        private State state = State.NEW;
+
+        Handoff(PageHistory page) {
+            this.page = page;
+        }
+
+        synchronized boolean start() {
+            if (state != State.NEW) {
+                return false;
+            }
+
+            state = State.RUNNING;
+            return true;
+        }
+
+        synchronized void finish() {
+            state = State.DONE;
+            notifyAll();
+        }
+
+        // waits until the receiving split is done with the page; if it hasn't started within the given time, the page
+        // is taken back instead, e.g. on short-circuited streams whose pending splits are never traversed
+        boolean awaitOrReclaim(long timeoutNanos) {
+            var deadline = System.nanoTime() + timeoutNanos;
+
+            var blocker = new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    synchronized (Handoff.this) {
+                        while (state == State.NEW) {
+                            var remaining = deadline - System.nanoTime();
+
+                            if (remaining <= 0) {
+                                state = State.RECLAIMED;
+                                return true;
+                            }
+
+                            TimeUnit.NANOSECONDS.timedWait(Handoff.this, remaining);
+                        }
+
+                        while (state == State.RUNNING) {
+                            Handoff.this.wait();
+                        }
+
+                        return true;
+                    }
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    synchronized (Handoff.this) {
+                        return state == State.DONE || state == State.RECLAIMED;
+                    }
+                }
+            };
+
+            try {
+                // lets the pool compensate for this thread while the receiving split is queued
+                ForkJoinPool.managedBlock(blocker);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a page history", e);
+            }
+
+            synchronized (this) {
+                return state == State.RECLAIMED;
+            }
+        }
+    }
+
+    private static class HandoffSpliterator implements Spliterator<PageHistory> {
+        private final Handoff handoff;
+
+        HandoffSpliterator(Handoff handoff) {
+            this.handoff = handoff;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super PageHistory> action) {
+            if (!handoff.start()) {
+                return false;
+            }
+
+            try {
+                deliver(handoff.page, action);
+            } finally {
+                handoff.finish();
+            }
+
+            return true;
+        }
+
+        @Override
+        public Spliterator<PageHistory> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return 1;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+}
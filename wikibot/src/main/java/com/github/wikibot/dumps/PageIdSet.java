@@ -0,0 +1,69 @@
+package com.github.wikibot.dumps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.stream.LongStream;
+
+// immutable set of page IDs backed by a sorted array, no boxing on lookup
+final class PageIdSet {
+    private final long[] ids;
+
+    private PageIdSet(long[] ids) {
+        this.ids = ids;
+    }
+
+    static PageIdSet of(Collection<Long> ids) {
+        var sorted = ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        return new PageIdSet(sorted);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    // parses the decimal ID at [start, end) without allocating; false if it is not a valid ID
+    boolean contains(CharSequence cs, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return false;
+        }
+
+        var id = 0L;
+
+        for (int i = start; i < end; i++) {
+            var c = cs.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return false;
+            }
+
+            id = id * 10 + (c - '0');
+        }
+
+        return contains(id);
+    }
+
+    long first() {
+        if (ids.length == 0) {
+            throw new NoSuchElementException();
+        }
+
+        return ids[0];
+    }
+
+    long last() {
+        if (ids.length == 0) {
+            throw new NoSuchElementException();
+        }
+
+        return ids[ids.length - 1];
+    }
+
+    LongStream stream() {
+        return Arrays.stream(ids);
+    }
+}
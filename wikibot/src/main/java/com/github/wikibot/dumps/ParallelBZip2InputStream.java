@@ -0,0 +1,381 @@
+package com.github.wikibot.dumps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+// bzip2 blocks are bit-aligned and independent, each one is rewrapped into a single-block stream
+// and decoded on a worker pool; output is served in the original order
+class ParallelBZip2InputStream extends InputStream {
+    private static final long BLOCK_MAGIC = 0x314159265359L; // pi
+    private static final long EOS_MAGIC = 0x177245385090L; // sqrt(pi)
+    private static final long MASK_48 = (1L << 48) - 1;
+    private static final int STREAM_HEADER = 0x425a6839; // "BZh9", large enough for any block size
+    private static final int MAX_MERGED_SEGMENTS = 4;
+    private static final int READ_SIZE = 1 << 16;
+    private static final Segment END = new Segment(null, 0, 0, false, null);
+    private static final byte[] CANDIDATE_SHIFTS = new byte[256];
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final BlockingQueue<Segment> queue;
+    private final Thread scanner;
+
+    private volatile IOException scannerException;
+    private Segment pending;
+    private byte[] current = new byte[0];
+    private int pos;
+    private boolean eof;
+    private boolean closed;
+
+    ParallelBZip2InputStream(InputStream in, int threads, int maxInFlight) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads: " + threads);
+        }
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Illegal number of blocks in flight: " + maxInFlight);
+        }
+
+        this.in = Objects.requireNonNull(in);
+        executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().daemon().factory());
+        queue = new ArrayBlockingQueue<>(maxInFlight);
+        scanner = Thread.ofPlatform().daemon().name("bzip2-block-scanner").start(this::scan);
+    }
+
+    static {
+        // the byte preceding the last one read is fully covered by a magic number regardless of its bit alignment
+        for (int shift = 0; shift < 8; shift++) {
+            var i = (int)(BLOCK_MAGIC >>> (8 - shift)) & 0xff;
+            var j = (int)(EOS_MAGIC >>> (8 - shift)) & 0xff;
+            CANDIDATE_SHIFTS[i] = (byte)(CANDIDATE_SHIFTS[i] | (1 << shift));
+            CANDIDATE_SHIFTS[j] = (byte)(CANDIDATE_SHIFTS[j] | (1 << shift));
+        }
+    }
+
+    private void scan() {
+        var buf = new byte[1 << 20];
+        var len = 0;
+        var bufStart = 0L; // absolute byte offset of buf[0]
+        var blockStart = -1L; // absolute bit offset of the current segment, if any
+        var isTrailer = false;
+        var reg = 0L;
+
+        try {
+            while (true) {
+                // discard bytes that no longer belong to any pending segment
+                var keep = blockStart != -1 ? (int)(blockStart / 8 - bufStart) : Math.max(len - 8, 0);
+                System.arraycopy(buf, keep, buf, 0, len - keep);
+                len -= keep;
+                bufStart += keep;
+
+                if (buf.length - len < READ_SIZE) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+
+                var n = in.read(buf, len, READ_SIZE);
+
+                if (n == -1) {
+                    break;
+                }
+
+                for (int i = len; i < len + n; i++) {
+                    reg = (reg << 8) | (buf[i] & 0xff);
+
+                    var shifts = CANDIDATE_SHIFTS[(int)(reg >>> 8) & 0xff];
+
+                    if (shifts == 0) {
+                        continue;
+                    }
+
+                    for (int shift = 7; shift >= 0; shift--) {
+                        if ((shifts & (1 << shift)) == 0) {
+                            continue;
+                        }
+
+                        var candidate = (reg >>> shift) & MASK_48;
+
+                        if (candidate != BLOCK_MAGIC && candidate != EOS_MAGIC) {
+                            continue;
+                        }
+
+                        var magicBit = (bufStart + i) * 8 + 7 - shift - 47;
+
+                        if (magicBit < 0) {
+                            continue;
+                        }
+
+                        if (blockStart != -1) {
+                            var from = (int)(blockStart / 8 - bufStart);
+                            var to = (int)((magicBit + 7) / 8 - bufStart);
+                            var raw = Arrays.copyOfRange(buf, from, to);
+                            var startBit = (int)(blockStart % 8);
+                            var endBit = (int)(magicBit - blockStart / 8 * 8);
+                            submit(raw, startBit, endBit, isTrailer);
+                        }
+
+                        // keep the stream trailer in case this is a false positive within compressed data
+                        blockStart = magicBit;
+                        isTrailer = candidate == EOS_MAGIC;
+                    }
+                }
+
+                len += n;
+            }
+
+            if (blockStart != -1 && !isTrailer) {
+                // truncated stream, let the decoder complain
+                var from = (int)(blockStart / 8 - bufStart);
+                submit(Arrays.copyOfRange(buf, from, len), (int)(blockStart % 8), (len - from) * 8, false);
+            }
+        } catch (IOException e) {
+            scannerException = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {}
+    }
+
+    private void submit(byte[] raw, int startBit, int endBit, boolean isTrailer) throws InterruptedException {
+        var segment = new Segment(raw, startBit, endBit, isTrailer, null);
+
+        if (isTrailer) {
+            // end-of-stream marker, CRC and the header of the next stream, if any
+            queue.put(segment.withResult(CompletableFuture.completedFuture(new byte[0])));
+        } else {
+            queue.put(segment.withResult(executor.submit(() -> decode(List.of(segment)))));
+        }
+    }
+
+    private static byte[] decode(List<Segment> segments) throws IOException {
+        var first = segments.get(0);
+        var size = segments.stream().mapToInt(segment -> segment.raw.length).sum();
+        var out = new BitOutputStream(size + 16);
+        out.writeBits(32, STREAM_HEADER);
+
+        for (var segment : segments) {
+            out.copyBits(segment.raw, segment.startBit, segment.endBit);
+        }
+
+        // single-block stream, therefore the combined CRC equals the block CRC
+        out.writeBits(48, EOS_MAGIC);
+        out.writeBits(32, readBits(first.raw, first.startBit + 48, 32));
+        out.flush();
+
+        try (var bzip2 = new BZip2CompressorInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return bzip2.readAllBytes();
+        }
+    }
+
+    private static long readBits(byte[] data, long bit, int count) {
+        var value = 0L;
+
+        for (int i = 0; i < count; i++, bit++) {
+            value = (value << 1) | ((data[(int)(bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+        }
+
+        return value;
+    }
+
+    private Segment nextSegment() throws IOException {
+        if (pending != null) {
+            var segment = pending;
+            pending = null;
+            return segment;
+        }
+
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private byte[] resolve(Segment segment) throws IOException {
+        try {
+            return await(segment.result);
+        } catch (IOException e) {
+            // the block magic number might have appeared by chance within compressed data, retry with the next segments
+            var merged = new ArrayList<Segment>(List.of(segment));
+
+            while (merged.size() < MAX_MERGED_SEGMENTS) {
+                var next = nextSegment();
+
+                if (next == END) {
+                    pending = next;
+                    break;
+                }
+
+                next.result.cancel(true);
+                merged.add(next);
+
+                try {
+                    return decode(merged);
+                } catch (IOException ignored) {}
+            }
+
+            throw e;
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            } else {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        while (pos == current.length) {
+            if (eof) {
+                return false;
+            }
+
+            var segment = nextSegment();
+
+            if (segment == END) {
+                eof = true;
+
+                if (scannerException != null) {
+                    throw scannerException;
+                }
+
+                return false;
+            }
+
+            current = resolve(segment);
+            pos = 0;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return current[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        if (len == 0) {
+            return 0;
+        } else if (!fill()) {
+            return -1;
+        }
+
+        var n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        scanner.interrupt();
+        executor.shutdownNow();
+        in.close();
+    }
+
+    private record Segment(byte[] raw, int startBit, int endBit, boolean isTrailer, Future<byte[]> result) {
+        Segment withResult(Future<byte[]> result) {
+            return new Segment(raw, startBit, endBit, isTrailer, result);
+        }
+    }
+
+    private static class BitOutputStream extends ByteArrayOutputStream {
+        private long acc;
+        private int accBits;
+
+        BitOutputStream(int size) {
+            super(size);
+        }
+
+        void writeBits(int count, long value) {
+            acc = (acc << count) | (value & ((1L << count) - 1));
+            accBits += count;
+
+            while (accBits >= 8) {
+                write((int)(acc >>> (accBits - 8)));
+                accBits -= 8;
+            }
+        }
+
+        void copyBits(byte[] src, long fromBit, long toBit) {
+            var bit = fromBit;
+
+            if ((bit & 7) == 0 && accBits == 0) {
+                // fast path: byte-aligned on both ends
+                var bytes = (int)((toBit - bit) >>> 3);
+                write(src, (int)(bit >>> 3), bytes);
+                bit += bytes * 8L;
+            }
+
+            while (toBit - bit >= 8) {
+                var idx = (int)(bit >>> 3);
+                var shift = (int)(bit & 7);
+                var hi = (src[idx] & 0xff) << 8;
+                var lo = shift != 0 ? src[idx + 1] & 0xff : 0;
+                writeBits(8, ((hi | lo) >>> (8 - shift)) & 0xff);
+                bit += 8;
+            }
+
+            while (bit < toBit) {
+                writeBits(1, (src[(int)(bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+                bit++;
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (accBits > 0) {
+                write((int)(acc << (8 - accBits)));
+                accBits = 0;
+            }
+        }
+    }
+}
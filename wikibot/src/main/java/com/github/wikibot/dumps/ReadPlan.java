@@ -0,0 +1,31 @@
+package com.github.wikibot.dumps;
+
+// cost estimate of a filtered multistream read, in compressed bytes: seeking reads the selected chunks only, but
+// pays for a seek on each gap between them and a decoder restart on each chunk; scanning reads whole files (the
+// sequential sibling dump, if present) with a single decoder each, and no index lookups
+record ReadPlan(int selectedChunks, int totalChunks, int runs, long selectedBytes, long scanBytes, String scanSource) {
+    // random read latency on network storage, expressed as bytes that could have been streamed meanwhile
+    private static final long SEEK_COST = 128 * 1024;
+
+    // decoder setup plus buffer read-ahead past the end of each chunk
+    private static final long RESTART_COST = 16 * 1024;
+
+    long getSeekCost() {
+        return selectedBytes + runs * SEEK_COST + selectedChunks * RESTART_COST;
+    }
+
+    boolean prefersScan() {
+        return scanBytes <= getSeekCost();
+    }
+
+    double getHitRatio() {
+        return totalChunks != 0 ? (double)selectedChunks / totalChunks : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d chunks selected (%.1f%%) in %d runs, seek ~%s vs scan of %s ~%s",
+                             prefersScan() ? "scan" : "seek", selectedChunks, totalChunks, getHitRatio() * 100, runs,
+                             DumpMetrics.formatBytes(getSeekCost()), scanSource, DumpMetrics.formatBytes(scanBytes));
+    }
+}
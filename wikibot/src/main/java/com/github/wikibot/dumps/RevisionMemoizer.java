@@ -0,0 +1,78 @@
+package com.github.wikibot.dumps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// memoizes a per-revision analysis within each page, keyed by SHA-1: reverts, rollbacks and null edits restore
+// a text that has already been analyzed; the analyzer must only depend on the revision text and page info, and
+// its results must not be mutated; state is kept per thread, which is safe on parallel streams since revisions
+// of a page never end up in different splits (see PageAlignedSpliterator)
+public final class RevisionMemoizer<R> implements Function<XMLRevision, R> {
+    private final Function<XMLRevision, ? extends R> analyzer;
+    private final ThreadLocal<PageCache<R>> caches = ThreadLocal.withInitial(PageCache::new);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RevisionMemoizer(Function<XMLRevision, ? extends R> analyzer) {
+        this.analyzer = Objects.requireNonNull(analyzer);
+    }
+
+    // for TimelineCollectors.consuming(), use as `(rev, stats) -> stats.combine(memoizer.apply(rev))`
+    public static <E extends Enum<E>> RevisionMemoizer<EnumStats<E>> ofStats(Class<E> clazz, BiConsumer<XMLRevision, EnumStats<E>> consumer) {
+        Objects.requireNonNull(clazz);
+        Objects.requireNonNull(consumer);
+
+        return new RevisionMemoizer<>(rev -> {
+            var stats = new EnumStats<>(clazz);
+            consumer.accept(rev, stats);
+            return stats;
+        });
+    }
+
+    @Override
+    public R apply(XMLRevision rev) {
+        if (rev.getSha1().isEmpty()) {
+            return analyzer.apply(rev);
+        }
+
+        var cache = caches.get();
+
+        if (cache.pageId != rev.getPageid()) {
+            // don't clear, a long history would leave a large table behind
+            cache.pageId = rev.getPageid();
+            cache.results = new HashMap<>();
+        } else if (cache.results.containsKey(rev.getSha1())) {
+            hits.increment();
+            return cache.results.get(rev.getSha1());
+        }
+
+        misses.increment();
+        var result = analyzer.apply(rev);
+        cache.results.put(rev.getSha1(), result);
+        return result;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        var hitCount = getHitCount();
+        var total = hitCount + getMissCount();
+        return String.format("[hits=%d, misses=%d, hitRate=%.1f%%]", hitCount, total - hitCount, total != 0 ? hitCount * 100.0 / total : 0.0);
+    }
+
+    private static class PageCache<R> {
+        long pageId = -1;
+        Map<String, R> results = new HashMap<>();
+    }
+}
@@ -0,0 +1,425 @@
+package com.github.wikibot.dumps;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+// Columnar store of revision metadata (no comments nor text), e.g. converted once from a stub dump and memory-mapped afterwards:
+//   header | per revision: page index, revid, parentid, timestamp (epoch seconds), bytes, contributor ID, flags
+//          | per page: page ID (ascending), first revision, namespace, flags, title offsets | titles (UTF-8)
+//          | contributor offsets | contributor names (UTF-8)
+public final class RevisionMetadataStore {
+    private static final int MAGIC = 0x5742524d; // "WBRM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int FLAG_MINOR = 1;
+    private static final int FLAG_ANONYMOUS = 1 << 1;
+    private static final int FLAG_REVISION_DELETED = 1 << 2;
+    private static final int FLAG_COMMENT_DELETED = 1 << 3;
+    private static final int FLAG_CONTRIBUTOR_DELETED = 1 << 4;
+    private static final int FLAG_REDIRECT = 1;
+
+    private final MappedWindows data;
+    private final long revisionCount;
+    private final int pageCount;
+    private final int contributorCount;
+
+    private final long revPagesPos;
+    private final long revIdsPos;
+    private final long parentIdsPos;
+    private final long timestampsPos;
+    private final long bytesPos;
+    private final long contributorsPos;
+    private final long revFlagsPos;
+    private final long pageIdsPos;
+    private final long firstRevisionsPos;
+    private final long namespacesPos;
+    private final long pageFlagsPos;
+    private final long titleOffsetsPos;
+    private final long titlesPos;
+    private final long contributorOffsetsPos;
+    private final long contributorNamesPos;
+
+    private RevisionMetadataStore(MappedWindows data) {
+        this.data = data;
+
+        revisionCount = data.getLong(8);
+        pageCount = data.getInt(16);
+        contributorCount = data.getInt(20);
+        var titlesSize = data.getLong(24);
+
+        revPagesPos = HEADER_SIZE;
+        revIdsPos = MappedWindows.align(revPagesPos + 4 * revisionCount);
+        parentIdsPos = revIdsPos + 8 * revisionCount;
+        timestampsPos = parentIdsPos + 8 * revisionCount;
+        bytesPos = timestampsPos + 8 * revisionCount;
+        contributorsPos = bytesPos + 4 * revisionCount;
+        revFlagsPos = contributorsPos + 4 * revisionCount;
+        pageIdsPos = MappedWindows.align(revFlagsPos + revisionCount);
+        firstRevisionsPos = pageIdsPos + 8L * pageCount;
+        namespacesPos = firstRevisionsPos + 8L * (pageCount + 1);
+        pageFlagsPos = namespacesPos + 4L * pageCount;
+        titleOffsetsPos = MappedWindows.align(pageFlagsPos + pageCount);
+        titlesPos = titleOffsetsPos + 8L * (pageCount + 1);
+        contributorOffsetsPos = MappedWindows.align(titlesPos + titlesSize);
+        contributorNamesPos = contributorOffsetsPos + 8L * (contributorCount + 1);
+    }
+
+    public static RevisionMetadataStore open(Path file) {
+        try {
+            var store = new RevisionMetadataStore(MappedWindows.map(file));
+
+            if (store.data.getInt(0) != MAGIC || store.data.getInt(4) != VERSION) {
+                throw new IOException("Unrecognized revision metadata store: " + file);
+            }
+
+            return store;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // revisions must be grouped by page in ascending page ID order, as in stub dumps
+    public static void write(Stream<XMLRevision> revisions, Path file) {
+        try {
+            var dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            new Writer(dir).write(revisions, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getRevisionCount() {
+        return revisionCount;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getContributorCount() {
+        return contributorCount;
+    }
+
+    public long getRevid(long rev) {
+        return data.getLong(revIdsPos + 8 * rev);
+    }
+
+    public long getParentid(long rev) {
+        return data.getLong(parentIdsPos + 8 * rev);
+    }
+
+    // epoch seconds, or Long.MIN_VALUE if missing
+    public long getEpochSecond(long rev) {
+        return data.getLong(timestampsPos + 8 * rev);
+    }
+
+    public int getBytes(long rev) {
+        return data.getInt(bytesPos + 4 * rev);
+    }
+
+    public int getContributorId(long rev) {
+        return data.getInt(contributorsPos + 4 * rev);
+    }
+
+    public String getContributor(long rev) {
+        return getContributorName(getContributorId(rev));
+    }
+
+    public String getContributorName(int contributorId) {
+        var start = data.getLong(contributorOffsetsPos + 8L * contributorId);
+        var end = data.getLong(contributorOffsetsPos + 8L * (contributorId + 1));
+        return new String(data.getBytes(contributorNamesPos + start, contributorNamesPos + end), StandardCharsets.UTF_8);
+    }
+
+    public boolean isMinor(long rev) {
+        return (getRevisionFlags(rev) & FLAG_MINOR) != 0;
+    }
+
+    public boolean isAnonymousContributor(long rev) {
+        return (getRevisionFlags(rev) & FLAG_ANONYMOUS) != 0;
+    }
+
+    public boolean isRevisionDeleted(long rev) {
+        return (getRevisionFlags(rev) & FLAG_REVISION_DELETED) != 0;
+    }
+
+    public boolean isCommentDeleted(long rev) {
+        return (getRevisionFlags(rev) & FLAG_COMMENT_DELETED) != 0;
+    }
+
+    public boolean isContributorDeleted(long rev) {
+        return (getRevisionFlags(rev) & FLAG_CONTRIBUTOR_DELETED) != 0;
+    }
+
+    private int getRevisionFlags(long rev) {
+        return data.get(revFlagsPos + rev);
+    }
+
+    public int getPageIndex(long rev) {
+        return data.getInt(revPagesPos + 4 * rev);
+    }
+
+    public long getPageid(int page) {
+        return data.getLong(pageIdsPos + 8L * page);
+    }
+
+    public int getNamespace(int page) {
+        return data.getInt(namespacesPos + 4L * page);
+    }
+
+    public boolean isRedirect(int page) {
+        return (data.get(pageFlagsPos + page) & FLAG_REDIRECT) != 0;
+    }
+
+    public String getTitle(int page) {
+        var start = data.getLong(titleOffsetsPos + 8L * page);
+        var end = data.getLong(titleOffsetsPos + 8L * (page + 1));
+        return new String(data.getBytes(titlesPos + start, titlesPos + end), StandardCharsets.UTF_8);
+    }
+
+    // revisions of a page are stored contiguously: [first, end)
+    public long getFirstRevision(int page) {
+        return data.getLong(firstRevisionsPos + 8L * page);
+    }
+
+    public long getRevisionEnd(int page) {
+        return data.getLong(firstRevisionsPos + 8L * (page + 1));
+    }
+
+    public int findPage(long pageid) {
+        var low = 0;
+        var high = pageCount - 1;
+
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var value = getPageid(mid);
+
+            if (value < pageid) {
+                low = mid + 1;
+            } else if (value > pageid) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    public XMLRevision getRevision(long rev) {
+        var page = getPageIndex(rev);
+        var flags = getRevisionFlags(rev);
+        var epochSecond = getEpochSecond(rev);
+
+        var revision = new XMLRevision();
+        revision.title = getTitle(page);
+        revision.ns = getNamespace(page);
+        revision.pageid = getPageid(page);
+        revision.isRedirect = isRedirect(page);
+        revision.revid = getRevid(rev);
+        revision.parentid = getParentid(rev);
+        revision.timestamp = epochSecond != XMLRevision.NO_TIMESTAMP ? Instant.ofEpochSecond(epochSecond).toString() : null;
+        revision.epochSecond = epochSecond;
+        revision.contributor = getContributor(rev);
+        revision.isAnonymousContributor = (flags & FLAG_ANONYMOUS) != 0;
+        revision.isMinor = (flags & FLAG_MINOR) != 0;
+        revision.bytes = getBytes(rev);
+        revision.isRevDeleted = (flags & FLAG_REVISION_DELETED) != 0;
+        revision.isCommentDeleted = (flags & FLAG_COMMENT_DELETED) != 0;
+        revision.isUserDeleted = (flags & FLAG_CONTRIBUTOR_DELETED) != 0;
+        return revision;
+    }
+
+    // XMLRevision view without comments nor text, in dump order; parallel splits never break a page
+    public Stream<XMLRevision> stream() {
+        return IntStream.range(0, pageCount)
+            .mapToObj(page -> LongStream.range(getFirstRevision(page), getRevisionEnd(page)))
+            .flatMap(revisions -> revisions.mapToObj(this::getRevision));
+    }
+
+    private static class Writer {
+        private final Path dir;
+        private final List<Path> tempFiles = new ArrayList<>();
+        private final HashMap<String, Integer> contributorIds = new HashMap<>();
+
+        Writer(Path dir) {
+            this.dir = dir;
+        }
+
+        private Path createTempFile(String prefix) throws IOException {
+            var path = Files.createTempFile(dir, prefix, ".tmp");
+            tempFiles.add(path);
+            return path;
+        }
+
+        void write(Stream<XMLRevision> revisions, Path file) throws IOException {
+            var revPagesFile = createTempFile("revpages");
+            var revIdsFile = createTempFile("revids");
+            var parentIdsFile = createTempFile("parentids");
+            var timestampsFile = createTempFile("timestamps");
+            var bytesFile = createTempFile("bytes");
+            var contributorsFile = createTempFile("contributors");
+            var revFlagsFile = createTempFile("revflags");
+            var pageIdsFile = createTempFile("pageids");
+            var firstRevisionsFile = createTempFile("firstrevs");
+            var namespacesFile = createTempFile("namespaces");
+            var pageFlagsFile = createTempFile("pageflags");
+            var titleOffsetsFile = createTempFile("titleoffsets");
+            var titlesFile = createTempFile("titles");
+            var contributorOffsetsFile = createTempFile("contributoroffsets");
+            var contributorNamesFile = createTempFile("contributornames");
+            var outputFile = createTempFile("revmeta");
+
+            try {
+                var revisionCount = 0L;
+                var pageCount = 0;
+                var titlesSize = 0L;
+                var contributorNamesSize = 0L;
+
+                try (var revPages = MappedWindows.newDataOutputStream(revPagesFile);
+                     var revIds = MappedWindows.newDataOutputStream(revIdsFile);
+                     var parentIds = MappedWindows.newDataOutputStream(parentIdsFile);
+                     var timestamps = MappedWindows.newDataOutputStream(timestampsFile);
+                     var bytes = MappedWindows.newDataOutputStream(bytesFile);
+                     var contributors = MappedWindows.newDataOutputStream(contributorsFile);
+                     var revFlags = MappedWindows.newDataOutputStream(revFlagsFile);
+                     var pageIds = MappedWindows.newDataOutputStream(pageIdsFile);
+                     var firstRevisions = MappedWindows.newDataOutputStream(firstRevisionsFile);
+                     var namespaces = MappedWindows.newDataOutputStream(namespacesFile);
+                     var pageFlags = MappedWindows.newDataOutputStream(pageFlagsFile);
+                     var titleOffsets = MappedWindows.newDataOutputStream(titleOffsetsFile);
+                     var titles = MappedWindows.newDataOutputStream(titlesFile);
+                     var contributorOffsets = MappedWindows.newDataOutputStream(contributorOffsetsFile);
+                     var contributorNames = MappedWindows.newDataOutputStream(contributorNamesFile)) {
+                    var lastPageId = Long.MIN_VALUE;
+                    var iterator = revisions.iterator();
+
+                    while (iterator.hasNext()) {
+                        var rev = iterator.next();
+
+                        if (rev.getPageid() != lastPageId) {
+                            if (rev.getPageid() < lastPageId) {
+                                // binary search relies on the dump order, which follows page IDs
+                                throw new IOException("Revisions are not sorted by page ID: " + rev.getPageid());
+                            }
+
+                            var title = rev.getTitle().getBytes(StandardCharsets.UTF_8);
+
+                            pageIds.writeLong(rev.getPageid());
+                            firstRevisions.writeLong(revisionCount);
+                            namespaces.writeInt(rev.getNamespace());
+                            pageFlags.writeByte(rev.isRedirect() ? FLAG_REDIRECT : 0);
+                            titleOffsets.writeLong(titlesSize);
+                            titles.write(title);
+
+                            titlesSize += title.length;
+                            lastPageId = rev.getPageid();
+                            pageCount++;
+                        }
+
+                        var contributorId = contributorIds.get(rev.getContributor());
+
+                        if (contributorId == null) {
+                            var name = rev.getContributor().getBytes(StandardCharsets.UTF_8);
+                            contributorId = contributorIds.size();
+                            contributorIds.put(rev.getContributor(), contributorId);
+                            contributorOffsets.writeLong(contributorNamesSize);
+                            contributorNames.write(name);
+                            contributorNamesSize += name.length;
+                        }
+
+                        revPages.writeInt(pageCount - 1);
+                        revIds.writeLong(rev.getRevid());
+                        parentIds.writeLong(rev.getParentid());
+                        timestamps.writeLong(rev.getEpochSecond());
+                        bytes.writeInt(rev.getBytes());
+                        contributors.writeInt(contributorId);
+                        revFlags.writeByte(makeFlags(rev));
+
+                        revisionCount++;
+                    }
+
+                    firstRevisions.writeLong(revisionCount);
+                    titleOffsets.writeLong(titlesSize);
+                    contributorOffsets.writeLong(contributorNamesSize);
+                }
+
+                try (var out = FileChannel.open(outputFile, StandardOpenOption.WRITE)) {
+                    var header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC).putInt(VERSION).putLong(revisionCount);
+                    header.putInt(pageCount).putInt(contributorIds.size()).putLong(titlesSize).putLong(contributorNamesSize);
+                    MappedWindows.writeFully(out, header.rewind());
+
+                    MappedWindows.transfer(revPagesFile, out);
+                    MappedWindows.pad(out);
+
+                    for (var column : List.of(revIdsFile, parentIdsFile, timestampsFile, bytesFile, contributorsFile, revFlagsFile)) {
+                        MappedWindows.transfer(column, out);
+                    }
+
+                    MappedWindows.pad(out);
+
+                    for (var column : List.of(pageIdsFile, firstRevisionsFile, namespacesFile, pageFlagsFile)) {
+                        MappedWindows.transfer(column, out);
+                    }
+
+                    MappedWindows.pad(out);
+                    MappedWindows.transfer(titleOffsetsFile, out);
+                    MappedWindows.transfer(titlesFile, out);
+                    MappedWindows.pad(out);
+                    MappedWindows.transfer(contributorOffsetsFile, out);
+                    MappedWindows.transfer(contributorNamesFile, out);
+                }
+
+                Files.move(outputFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                System.out.printf("Stored metadata of %d revisions (%d pages, %d contributors) at %s%n", revisionCount, pageCount, contributorIds.size(), file);
+            } finally {
+                for (var path : tempFiles) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+
+        private static int makeFlags(XMLRevision rev) {
+            var flags = 0;
+
+            if (rev.isMinor()) {
+                flags |= FLAG_MINOR;
+            }
+
+            if (rev.isAnonymousContributor()) {
+                flags |= FLAG_ANONYMOUS;
+            }
+
+            if (rev.isRevisionDeleted()) {
+                flags |= FLAG_REVISION_DELETED;
+            }
+
+            if (rev.isCommentDeleted()) {
+                flags |= FLAG_COMMENT_DELETED;
+            }
+
+            if (rev.isContributorDeleted()) {
+                flags |= FLAG_CONTRIBUTOR_DELETED;
+            }
+
+            return flags;
+        }
+    }
+}
@@ -1,10 +1,8 @@
 package com.github.wikibot.dumps;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.Objects;
@@ -16,7 +14,7 @@ public class RootlessXMLInputStream extends InputStream {
     private static final String ROOT_ELEMENT = "dummy_root";
 
     private final Iterator<Long> offsetsIter;
-    private final FileChannel dumpChannel;
+    private final ChannelReadAhead readAhead;
     private final CompressorStreamFactory factory;
     private final ByteArrayInputStream startRoot;
     private final ByteArrayInputStream endRoot;
@@ -25,8 +23,13 @@ public class RootlessXMLInputStream extends InputStream {
     private String compressorName;
 
     RootlessXMLInputStream(FileChannel fch, Iterable<Long> offsets) {
+        this(fch, offsets, ChannelReadAhead.DEFAULT_WINDOW_SIZE, DumpMetrics.DISABLED);
+    }
+
+    // offsets are expected in ascending order, adjacent chunks are then fetched along with the preceding ones
+    RootlessXMLInputStream(FileChannel fch, Iterable<Long> offsets, int readAheadSize, DumpMetrics metrics) {
         offsetsIter = offsets.iterator();
-        dumpChannel = fch;
+        readAhead = new ChannelReadAhead(fch, readAheadSize, metrics);
         factory = new CompressorStreamFactory(false);
 
         startRoot = new ByteArrayInputStream(String.format("<%s>", ROOT_ELEMENT).getBytes());
@@ -34,18 +37,22 @@ public class RootlessXMLInputStream extends InputStream {
     }
 
     private void prepareNextStream() throws IOException {
+        if (currentStream != null) {
+            currentStream.close();
+            currentStream = null;
+        }
+
         while (offsetsIter.hasNext()) {
             var offset = offsetsIter.next();
 
             try {
-                dumpChannel.position(offset);
-                var bis = new BufferedInputStream(Channels.newInputStream(dumpChannel));
+                var is = readAhead.openAt(offset);
 
                 if (compressorName == null) {
-                    compressorName = CompressorStreamFactory.detect(bis);
+                    compressorName = CompressorStreamFactory.detect(is);
                 }
 
-                currentStream = factory.createCompressorInputStream(compressorName, bis);
+                currentStream = factory.createCompressorInputStream(compressorName, is);
                 return;
             }  catch (CompressorException e) {
                 throw e;
@@ -53,8 +60,6 @@ public class RootlessXMLInputStream extends InputStream {
                 System.out.printf("Unable to read file at channel position %d: %s%n", offset, e.getMessage());
             }
         }
-
-        currentStream = null;
     }
 
     @Override
@@ -93,36 +98,31 @@ public class RootlessXMLInputStream extends InputStream {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        if (currentStream == null) {
-            return super.read(b, off, len);
-        }
+        Objects.checkFromIndexSize(off, len, b.length);
 
-        Objects.requireNonNull(b);
-
-        if (off < 0 || len < 0 || len > b.length - off) {
-            throw new IndexOutOfBoundsException();
-        } else if (len == 0) {
+        if (len == 0) {
             return 0;
         }
 
-        int read = 0;
+        if (startRoot.available() != 0) {
+            return startRoot.read(b, off, len);
+        }
+
+        if (currentStream == null) {
+            prepareNextStream();
+        }
 
         while (currentStream != null) {
-            int n = currentStream.read(b, off, len);
-
-            if (n == len) {
-                read += len;
-                break;
-            } else if (n > 0) {
-                read += n;
-                len -= n;
-                off += n;
+            var n = currentStream.read(b, off, len);
+
+            if (n > 0) {
+                return n;
             }
 
             prepareNextStream();
         }
 
-        return read;
+        return endRoot.read(b, off, len);
     }
 
     @Override
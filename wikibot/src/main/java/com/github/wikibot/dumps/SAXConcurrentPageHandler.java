@@ -1,31 +1,110 @@
 package com.github.wikibot.dumps;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.xml.sax.SAXException;
 
 public final class SAXConcurrentPageHandler extends SAXPageHandler {
+    private final int threads;
+    private final Semaphore inFlight; // the parser blocks once workers fall this far behind
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
     private ExecutorService executor;
 
     public SAXConcurrentPageHandler(Consumer<XMLRevision> cons) {
-        super(cons);
+        this(cons, EnumSet.allOf(XMLRevisionField.class));
+    }
+
+    public SAXConcurrentPageHandler(Consumer<XMLRevision> cons, Set<XMLRevisionField> fields) {
+        this(cons, fields, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SAXConcurrentPageHandler(Consumer<XMLRevision> cons, Set<XMLRevisionField> fields, int threads) {
+        this(cons, fields, threads, threads * 2);
+    }
+
+    public SAXConcurrentPageHandler(Consumer<XMLRevision> cons, Set<XMLRevisionField> fields, int threads, int maxInFlight) {
+        super(cons, fields);
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads: " + threads);
+        }
+
+        if (maxInFlight < threads) {
+            throw new IllegalArgumentException("The in-flight limit must not be lower than the number of threads: " + maxInFlight);
+        }
+
+        this.threads = threads;
+        this.inFlight = new Semaphore(maxInFlight);
     }
 
     @Override
     public void startDocument() throws SAXException {
-        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().daemon().factory());
     }
 
     @Override
     public void endDocument() throws SAXException {
         executor.shutdown();
+
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {}
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new SAXException(e);
+        }
+
+        rethrowFailure();
     }
 
     @Override
-    protected void processRevision() {
+    protected void processRevision() throws SAXException {
+        rethrowFailure(); // stop parsing as soon as any consumer fails
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException(e);
+        }
+
         XMLRevision rev = revision;
-        executor.execute(() -> cons.accept(rev));
+
+        executor.execute(() -> {
+            try {
+                cons.accept(rev);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // releases worker threads if parsing has been aborted before reaching the end of the document
+    void shutdownNow() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void rethrowFailure() throws SAXException {
+        var t = failure.get();
+
+        if (t instanceof RuntimeException e) {
+            throw e;
+        } else if (t instanceof Error e) {
+            throw e;
+        } else if (t instanceof Exception e) {
+            throw new SAXException(e);
+        }
     }
 }
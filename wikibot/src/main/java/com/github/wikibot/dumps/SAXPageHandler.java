@@ -1,5 +1,6 @@
 package com.github.wikibot.dumps;
 
+import java.util.EnumSet;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -9,24 +10,35 @@ import org.xml.sax.helpers.DefaultHandler;
 
 public class SAXPageHandler extends DefaultHandler {
     protected static final Set<String> CONTENT_TAGS = Set.of(
-        "title", "ns", "id", "redirect", "parentid", "timestamp", "username", "ip", "minor", "comment", "text"
+        "title", "ns", "id", "redirect", "parentid", "timestamp", "username", "ip", "minor", "comment", "text", "sha1"
     );
 
     protected final Consumer<XMLRevision> cons;
+    protected final Set<XMLRevisionField> fields;
 
     protected XMLRevision revision;
     protected boolean acceptContent;
     protected StringBuilder sb;
 
     public SAXPageHandler(Consumer<XMLRevision> cons) {
+        this(cons, EnumSet.allOf(XMLRevisionField.class));
+    }
+
+    public SAXPageHandler(Consumer<XMLRevision> cons, Set<XMLRevisionField> fields) {
         this.cons = cons;
+        this.fields = fields;
+    }
+
+    protected boolean isProjected(String qName) {
+        var field = XMLRevisionField.ofElement(qName);
+        return field == null || fields.contains(field);
     }
 
     @Override
     public void startElement(String namespaceURI, String localName, String qName, Attributes atts) throws SAXException {
         if (qName.equals("page")) {
             revision = new XMLRevision();
-        } else if (revision != null && CONTENT_TAGS.contains(qName)) {
+        } else if (revision != null && CONTENT_TAGS.contains(qName) && isProjected(qName)) {
             acceptContent = true;
 
             if (qName.equals("text")) {
@@ -51,6 +63,14 @@ public class SAXPageHandler extends DefaultHandler {
             return;
         }
 
+        if (!isProjected(qName)) {
+            if (qName.equals("ip")) {
+                revision.isAnonymousContributor = true;
+            }
+
+            return;
+        }
+
         switch (qName) {
             case "title":
                 revision.title = sb.toString();
@@ -73,6 +93,7 @@ public class SAXPageHandler extends DefaultHandler {
                 break;
             case "timestamp":
                 revision.timestamp = sb.toString();
+                revision.epochSecond = XMLRevision.parseEpochSecond(revision.timestamp);
                 break;
             case "username":
                 revision.contributor = sb.toString();
@@ -90,6 +111,9 @@ public class SAXPageHandler extends DefaultHandler {
             case "text":
                 revision.text = sb.toString();
                 break;
+            case "sha1":
+                revision.sha1 = sb.toString();
+                break;
             case "page":
                 processRevision();
                 revision = null;
@@ -99,7 +123,7 @@ public class SAXPageHandler extends DefaultHandler {
         acceptContent = false;
     }
 
-    protected void processRevision() {
+    protected void processRevision() throws SAXException {
         cons.accept(revision);
     }
 }
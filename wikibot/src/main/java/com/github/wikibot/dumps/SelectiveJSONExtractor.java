@@ -0,0 +1,349 @@
+package com.github.wikibot.dumps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// builds a pruned JSONObject containing only the selected paths of the revision text (e.g. Wikibase entities),
+// everything else is skipped without being parsed or allocated; paths are dot-separated object keys or array
+// indexes, "*" matches any key or index; unselected subtrees are not validated
+public final class SelectiveJSONExtractor implements Function<XMLRevision, JSONObject> {
+    private final Node root = new Node();
+
+    private static class Node {
+        final Map<String, Node> children = new HashMap<>();
+        Node any;
+        boolean whole; // keep the full value
+        boolean keys; // keep all keys of an object, values are JSONObject.NULL unless selected otherwise
+    }
+
+    // the value at the given path is stored in full
+    public SelectiveJSONExtractor select(String path) {
+        resolve(path).whole = true;
+        return this;
+    }
+
+    // all keys of the object at the given path are stored, mapped to JSONObject.NULL, e.g. for has() checks
+    public SelectiveJSONExtractor selectKeys(String path) {
+        resolve(path).keys = true;
+        return this;
+    }
+
+    private Node resolve(String path) {
+        if (Objects.requireNonNull(path).isEmpty()) {
+            throw new IllegalArgumentException("Empty path");
+        }
+
+        var node = root;
+
+        for (var segment : path.split("\\.", -1)) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Empty segment in path: " + path);
+            } else if (segment.equals("*")) {
+                if (node.any == null) {
+                    node.any = new Node();
+                }
+
+                node = node.any;
+            } else {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+        }
+
+        return node;
+    }
+
+    @Override
+    public JSONObject apply(XMLRevision rev) {
+        return extract(rev.getText());
+    }
+
+    public JSONObject extract(String text) {
+        var parser = new Parser(text);
+        parser.skipWhitespace();
+
+        if (parser.peek() != '{') {
+            throw parser.error("A JSONObject text must begin with '{'");
+        }
+
+        var json = (JSONObject)parser.parseSelected(root);
+        parser.skipWhitespace();
+
+        if (parser.pos < text.length()) {
+            throw parser.error("Unexpected trailing content");
+        }
+
+        return json;
+    }
+
+    // single-use, since extractors are shared among threads
+    private static class Parser {
+        final String text;
+        int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        JSONException error(String message) {
+            return new JSONException(message + " at " + pos);
+        }
+
+        char peek() {
+            if (pos >= text.length()) {
+                throw error("Unexpected end of text");
+            }
+
+            return text.charAt(pos);
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        void expect(char c) {
+            skipWhitespace();
+
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+
+            pos++;
+        }
+
+        // returns null if nothing was selected in this value
+        Object parseSelected(Node node) {
+            if (node.whole) {
+                return parseValue();
+            }
+
+            skipWhitespace();
+
+            return switch (peek()) {
+                case '{' -> parseSelectedObject(node);
+                case '[' -> parseSelectedArray(node);
+                default -> {
+                    skipValue();
+                    yield null;
+                }
+            };
+        }
+
+        JSONObject parseSelectedObject(Node node) {
+            var json = new JSONObject();
+            var decodeKeys = node.keys || node.any != null || !node.children.isEmpty();
+            pos++;
+            skipWhitespace();
+
+            if (peek() == '}') {
+                pos++;
+                return json;
+            }
+
+            while (true) {
+                skipWhitespace();
+
+                if (peek() != '"') {
+                    throw error("Expected a key");
+                }
+
+                String key = null;
+                Node child = null;
+
+                if (decodeKeys) {
+                    key = parseString();
+                    child = node.children.getOrDefault(key, node.any);
+                } else {
+                    skipString();
+                }
+
+                expect(':');
+                var value = child != null ? parseSelected(child) : skipValue();
+
+                if (value != null) {
+                    json.put(key, value);
+                } else if (node.keys) {
+                    json.put(key, JSONObject.NULL);
+                }
+
+                skipWhitespace();
+
+                if (peek() == ',') {
+                    pos++;
+                } else if (peek() == '}') {
+                    pos++;
+                    return json;
+                } else {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        JSONArray parseSelectedArray(Node node) {
+            var json = new JSONArray();
+            pos++;
+            skipWhitespace();
+
+            if (peek() == ']') {
+                pos++;
+                return json;
+            }
+
+            for (int index = 0; ; index++) {
+                var child = node.children.isEmpty() ? node.any : node.children.getOrDefault(Integer.toString(index), node.any);
+                var value = child != null ? parseSelected(child) : skipValue();
+                json.put(value != null ? value : JSONObject.NULL); // keep indexes stable
+
+                skipWhitespace();
+
+                if (peek() == ',') {
+                    pos++;
+                } else if (peek() == ']') {
+                    pos++;
+                    return json;
+                } else {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        Object parseValue() {
+            skipWhitespace();
+
+            return switch (peek()) {
+                case '{', '[' -> {
+                    // selected subtrees are small in practice, let org.json build them
+                    var start = pos;
+                    skipValue();
+                    var sub = text.substring(start, pos);
+                    yield sub.charAt(0) == '{' ? new JSONObject(sub) : new JSONArray(sub);
+                }
+                case '"' -> parseString();
+                default -> {
+                    var start = pos;
+                    skipValue();
+                    yield JSONObject.stringToValue(text.substring(start, pos));
+                }
+            };
+        }
+
+        // always returns null, for convenience
+        Object skipValue() {
+            skipWhitespace();
+
+            switch (peek()) {
+                case '{', '[' -> {
+                    var depth = 0;
+
+                    do {
+                        switch (peek()) {
+                            case '{', '[' -> {
+                                depth++;
+                                pos++;
+                            }
+                            case '}', ']' -> {
+                                depth--;
+                                pos++;
+                            }
+                            case '"' -> skipString();
+                            default -> pos++;
+                        }
+                    } while (depth > 0);
+                }
+                case '"' -> skipString();
+                default -> {
+                    var start = pos;
+
+                    while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) == -1) {
+                        pos++;
+                    }
+
+                    if (pos == start) {
+                        throw error("Expected a value");
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        void skipString() {
+            pos++;
+
+            while (true) {
+                var c = peek();
+                pos++;
+
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    pos++;
+                }
+            }
+        }
+
+        String parseString() {
+            var start = ++pos;
+
+            // fast path: no escape sequences
+            while (true) {
+                var c = peek();
+
+                if (c == '"') {
+                    return text.substring(start, pos++);
+                } else if (c == '\\') {
+                    break;
+                }
+
+                pos++;
+            }
+
+            var sb = new StringBuilder(pos - start + 16).append(text, start, pos);
+
+            while (true) {
+                var c = peek();
+                pos++;
+
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+
+                c = peek();
+                pos++;
+
+                switch (c) {
+                    case '"', '\\', '/' -> sb.append(c);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("Truncated unicode escape");
+                        }
+
+                        try {
+                            sb.append((char)Integer.parseInt(text, pos, pos + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Illegal unicode escape");
+                        }
+
+                        pos += 4;
+                    }
+                    default -> throw error("Illegal escape");
+                }
+            }
+        }
+    }
+}
@@ -4,18 +4,53 @@ import java.time.OffsetDateTime;
 import java.time.Period;
 
 public final class SimpleTimeline extends Timeline<Long> {
+    private final long[] values;
+
     SimpleTimeline(OffsetDateTime start, OffsetDateTime end, Period period) {
-        super(start, end, period, time -> new Entry(time, 0L));
+        super(start, end, period);
+        values = new long[size()];
+    }
+
+    // adds the value to entries [from, to)
+    void add(int from, int to, long value) {
+        for (int i = from; i < to; i++) {
+            values[i] += value;
+        }
     }
 
-    static class Entry extends Timeline.Entry<Long> {
-        Entry(OffsetDateTime time, long value) {
-            super(time, value);
+    @Override
+    void merge(Timeline<Long> other) {
+        checkCompatible(other);
+        add(((SimpleTimeline)other).values);
+    }
+
+    private void add(long[] others) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] += others[i];
+        }
+    }
+
+    @Override
+    Entry getEntry(int index) {
+        return new Entry(index);
+    }
+
+    class Entry extends Timeline.Entry<Long> {
+        private final int index;
+
+        Entry(int index) {
+            super(SimpleTimeline.this.getTime(index));
+            this.index = index;
+        }
+
+        @Override
+        public Long getValue() {
+            return values[index];
         }
 
         @Override
         public void combine(Long other) {
-            value += other;
+            values[index] += other;
         }
     }
 }
@@ -2,9 +2,16 @@ package com.github.wikibot.dumps;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -15,19 +22,30 @@ public final class StAXDumpReader implements Iterable<XMLRevision> {
 
     private final XMLStreamReader streamReader;
     private final long estimateSize;
+    private final boolean lazyText;
+    private final Set<XMLRevisionField> fields;
 
     public StAXDumpReader(XMLStreamReader streamReader) {
-        this.streamReader = streamReader;
-        this.estimateSize = 0;
+        this(streamReader, 0, false, EnumSet.allOf(XMLRevisionField.class));
     }
 
     public StAXDumpReader(XMLStreamReader streamReader, long estimateSize) {
+        this(streamReader, estimateSize, false, EnumSet.allOf(XMLRevisionField.class));
+    }
+
+    // with lazy text, XMLRevision.getText() must be called before the next revision is requested;
+    // character data of fields not in the projection is not even buffered
+    public StAXDumpReader(XMLStreamReader streamReader, long estimateSize, boolean lazyText, Set<XMLRevisionField> fields) {
         if (estimateSize < 0) {
             throw new IllegalArgumentException("Negative estimateSize value: " + estimateSize);
         }
 
         this.streamReader = streamReader;
         this.estimateSize = estimateSize;
+        this.lazyText = lazyText;
+        var projection = EnumSet.noneOf(XMLRevisionField.class);
+        projection.addAll(fields);
+        this.fields = Collections.unmodifiableSet(projection);
     }
 
     @Override
@@ -37,24 +55,74 @@ public final class StAXDumpReader implements Iterable<XMLRevision> {
 
     @Override
     public Spliterator<XMLRevision> spliterator() {
-        if (estimateSize == 0) {
-            return Spliterators.spliteratorUnknownSize(iterator(), BASIC_CHARACTERISTICS);
+        if (lazyText) {
+            // batched splits would read ahead and invalidate the text of buffered revisions
+            return new SequentialSpliterator(iterator(), estimateSize);
         } else {
-            return Spliterators.spliterator(iterator(), estimateSize, BASIC_CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED);
+            // revisions of a page never end up in different splits
+            return new PageAlignedSpliterator(iterator(), estimateSize);
+        }
+    }
+
+    static class SequentialSpliterator extends Spliterators.AbstractSpliterator<XMLRevision> {
+        private final Iterator<XMLRevision> iterator;
+
+        SequentialSpliterator(Iterator<XMLRevision> iterator, long estimateSize) {
+            super(estimateSize != 0 ? estimateSize : Long.MAX_VALUE, BASIC_CHARACTERISTICS | (estimateSize != 0 ? Spliterator.SIZED : 0));
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XMLRevision> action) {
+            if (iterator.hasNext()) {
+                action.accept(iterator.next());
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<XMLRevision> trySplit() {
+            return null;
+        }
+
+        @Override
+        public Comparator<? super XMLRevision> getComparator() {
+            return null; // natural order
         }
     }
 
     private class StAXIterator implements Iterator<XMLRevision> {
-        private final StringBuilder buffer;
+        private StringBuilder buffer;
+        private StringBuilder spareBuffer;
         private final PageInfo pageInfo;
         private boolean appendable;
+        private boolean skippable;
+        private volatile long textGeneration;
 
         public StAXIterator() {
             buffer = new StringBuilder(100000);
+            spareBuffer = lazyText ? new StringBuilder(100000) : null;
             pageInfo = new PageInfo();
             appendable = false;
         }
 
+        // hand the current buffer over to the revision, its contents stay intact until the next text element
+        private Supplier<String> detachText(StringBuilder sb) {
+            var generation = ++textGeneration;
+            buffer = spareBuffer;
+            spareBuffer = sb;
+
+            return () -> {
+                if (generation != textGeneration) {
+                    throw new IllegalStateException("Revision text is no longer available, the dump reader has moved on");
+                }
+
+                return sb.toString();
+            };
+        }
+
         @Override
         public boolean hasNext() {
             try {
@@ -85,7 +153,7 @@ public final class StAXDumpReader implements Iterable<XMLRevision> {
         public XMLRevision next() {
             try {
                 var revision = pageInfo.makeRevision();
-                var consumer = new RevisionConsumer(revision);
+                var consumer = new RevisionConsumer(revision, fields, lazyText ? this::detachText : null);
 
                 while (!(streamReader.next() == XMLStreamConstants.END_ELEMENT && streamReader.getLocalName().equals("revision"))) {
                     parseCurrentElement(consumer);
@@ -102,10 +170,12 @@ public final class StAXDumpReader implements Iterable<XMLRevision> {
                 case XMLStreamConstants.START_ELEMENT:
                     buffer.setLength(0);
                     appendable = true;
+                    var field = XMLRevisionField.ofElement(streamReader.getLocalName());
+                    skippable = field != null && !fields.contains(field);
                     consumer.acceptStartElement(streamReader);
                     break;
                 case XMLStreamConstants.CHARACTERS:
-                    if (appendable) {
+                    if (appendable && !skippable) {
                         buffer.append(streamReader.getTextCharacters(), streamReader.getTextStart(), streamReader.getTextLength());
                     }
 
@@ -178,9 +248,13 @@ public final class StAXDumpReader implements Iterable<XMLRevision> {
 
     private static class RevisionConsumer implements XMLConsumer {
         private final XMLRevision revision;
+        private final Set<XMLRevisionField> fields;
+        private final Function<StringBuilder, Supplier<String>> textDetacher;
 
-        RevisionConsumer(XMLRevision revision) {
+        RevisionConsumer(XMLRevision revision, Set<XMLRevisionField> fields, Function<StringBuilder, Supplier<String>> textDetacher) {
             this.revision = revision;
+            this.fields = fields;
+            this.textDetacher = textDetacher;
         }
 
         @Override
@@ -224,23 +298,42 @@ public final class StAXDumpReader implements Iterable<XMLRevision> {
                     revision.parentid = Long.parseLong(sb.toString());
                     break;
                 case "timestamp":
-                    revision.timestamp = sb.toString();
+                    if (fields.contains(XMLRevisionField.TIMESTAMP)) {
+                        revision.timestamp = sb.toString();
+                        revision.epochSecond = XMLRevision.parseEpochSecond(revision.timestamp);
+                    }
                     break;
                 case "username":
-                    revision.contributor = sb.toString();
+                    if (fields.contains(XMLRevisionField.CONTRIBUTOR)) {
+                        revision.contributor = sb.toString();
+                    }
                     break;
                 case "ip": // either this or "username"
-                    revision.contributor = sb.toString();
+                    if (fields.contains(XMLRevisionField.CONTRIBUTOR)) {
+                        revision.contributor = sb.toString();
+                    }
                     revision.isAnonymousContributor = true;
                     break;
                 case "minor":
                     revision.isMinor = true;
                     break;
                 case "comment":
-                    revision.comment = sb.toString();
+                    if (fields.contains(XMLRevisionField.COMMENT)) {
+                        revision.comment = sb.toString();
+                    }
+                    break;
+                case "sha1":
+                    revision.sha1 = sb.toString();
                     break;
                 case "text":
-                    revision.text = sb.toString();
+                    if (!fields.contains(XMLRevisionField.TEXT)) {
+                        break;
+                    } else if (textDetacher != null) {
+                        revision.lazyText = textDetacher.apply(sb);
+                    } else {
+                        revision.text = sb.toString();
+                    }
+
                     break;
             }
         }
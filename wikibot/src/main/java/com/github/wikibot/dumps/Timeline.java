@@ -3,22 +3,26 @@ package com.github.wikibot.dumps;
 import java.time.OffsetDateTime;
 import java.time.Period;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Spliterator;
-import java.util.function.Function;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public abstract class Timeline<T> implements Iterable<Timeline.Entry<T>> {
-    private final List<Entry<T>> storage;
+    private final List<OffsetDateTime> times;
+    // rounded up, hence (time > revision timestamp) <=> (epochSecond > revision epoch second) as used by indexAfter();
+    // the converse comparison doesn't hold for sub-second times
+    private final long[] epochSeconds;
 
-    Timeline(OffsetDateTime start, OffsetDateTime end, Period period, Function<OffsetDateTime, Entry<T>> entrySupplier) {
+    Timeline(OffsetDateTime start, OffsetDateTime end, Period period) {
         Objects.requireNonNull(start);
         Objects.requireNonNull(end);
         Objects.requireNonNull(period);
-        Objects.requireNonNull(entrySupplier);
 
         if (!end.isAfter(start)) {
             throw new IllegalArgumentException("end must be after start");
@@ -29,11 +33,12 @@ public abstract class Timeline<T> implements Iterable<Timeline.Entry<T>> {
         }
 
         // beware of https://stackoverflow.com/q/13440375/10404307
-        this.storage = initializeStorage(start, end, period, entrySupplier);
+        this.times = initializeTimes(start, end, period);
+        this.epochSeconds = times.stream().mapToLong(time -> time.toEpochSecond() + (time.getNano() != 0 ? 1 : 0)).toArray();
     }
 
-    private List<Entry<T>> initializeStorage(OffsetDateTime start, OffsetDateTime end, Period period, Function<OffsetDateTime, Entry<T>> entrySupplier) {
-        var storage = new ArrayList<Entry<T>>();
+    private static List<OffsetDateTime> initializeTimes(OffsetDateTime start, OffsetDateTime end, Period period) {
+        var times = new ArrayList<OffsetDateTime>();
 
         for (int i = 0; ; i++) {
             var time = start.plus(period.multipliedBy(i));
@@ -42,20 +47,46 @@ public abstract class Timeline<T> implements Iterable<Timeline.Entry<T>> {
                 break;
             }
 
-            storage.add(entrySupplier.apply(time));
+            times.add(time);
         }
 
-        return storage;
+        return Collections.unmodifiableList(times);
     }
 
+    int size() {
+        return times.size();
+    }
+
+    OffsetDateTime getTime(int index) {
+        return times.get(index);
+    }
+
+    // index of the first entry after the given time, or size() if there is none
+    int indexAfter(long epochSecond) {
+        var index = Arrays.binarySearch(epochSeconds, epochSecond);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    void checkCompatible(Timeline<T> other) {
+        if (!times.equals(other.times)) {
+            throw new IllegalArgumentException("Timelines do not match");
+        }
+    }
+
+    // adds up the values of both timelines entry by entry, they must share the same start, end and period
+    abstract void merge(Timeline<T> other);
+
+    // a live view, changes are written through to the timeline
+    abstract Entry<T> getEntry(int index);
+
     @Override
     public Iterator<Entry<T>> iterator() {
-        return storage.iterator();
+        return stream().iterator();
     }
 
     @Override
     public Spliterator<Entry<T>> spliterator() {
-        return storage.spliterator();
+        return IntStream.range(0, size()).mapToObj(this::getEntry).spliterator();
     }
 
     public Stream<Entry<T>> stream() {
@@ -64,25 +95,21 @@ public abstract class Timeline<T> implements Iterable<Timeline.Entry<T>> {
 
     @Override
     public String toString() {
-        return storage.toString();
+        return stream().toList().toString();
     }
 
     public static abstract class Entry<T> implements Comparable<Entry<T>> {
         private final OffsetDateTime time;
-        protected T value;
 
-        Entry(OffsetDateTime time, T value) {
+        Entry(OffsetDateTime time) {
             this.time = Objects.requireNonNull(time);
-            this.value = Objects.requireNonNull(value);
         }
 
         public OffsetDateTime getTime() {
             return time;
         }
 
-        public T getValue() {
-            return value;
-        }
+        public abstract T getValue();
 
         public abstract void combine(T other);
 
@@ -104,7 +131,7 @@ public abstract class Timeline<T> implements Iterable<Timeline.Entry<T>> {
 
         @Override
         public String toString() {
-            return String.format("[%s, %s]", time.toString(), value.toString());
+            return String.format("[%s, %s]", time.toString(), getValue().toString());
         }
 
         @Override
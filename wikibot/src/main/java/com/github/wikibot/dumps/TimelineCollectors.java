@@ -3,7 +3,6 @@ package com.github.wikibot.dumps;
 import java.time.OffsetDateTime;
 import java.time.Period;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
@@ -12,7 +11,6 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.ToLongFunction;
-import java.util.function.UnaryOperator;
 import java.util.stream.Collector;
 
 public final class TimelineCollectors {
@@ -22,128 +20,173 @@ public final class TimelineCollectors {
 
     public static Collector<XMLRevision, ?, SimpleTimeline>
     filtering(OffsetDateTime start, OffsetDateTime end, Period period, Predicate<XMLRevision> condition) {
-        return new TimelineCollector<>(
-            () -> new SimpleTimeline(start, end, period),
-            rev  -> condition.test(rev) ? 1L : 0L
-        );
+        return mapping(start, end, period, rev -> condition.test(rev) ? 1L : 0L);
     }
 
     public static Collector<XMLRevision, ?, SimpleTimeline>
     mapping(OffsetDateTime start, OffsetDateTime end, Period period, ToLongFunction<XMLRevision> mapper) {
-        return new TimelineCollector<>(
-            () -> new SimpleTimeline(start, end, period),
-            rev -> mapper.applyAsLong(rev)
-        );
+        Objects.requireNonNull(mapper);
+        return new TimelineCollector<>(() -> new SimpleAccumulation(new SimpleTimeline(start, end, period), mapper));
     }
 
+    // the stats instance passed to the consumer is cleared and reused for every revision, do not keep references to it
     public static <E extends Enum<E>> Collector<XMLRevision, ?, CompoundTimeline<E>>
     consuming(OffsetDateTime start, OffsetDateTime end, Period period, Class<E> clazz, BiConsumer<XMLRevision, EnumStats<E>> consumer) {
-        return new TimelineCollector<>(
-            () -> new CompoundTimeline<>(start, end, period, clazz),
-            rev -> {
-                var stats = new EnumStats<>(clazz);
-                consumer.accept(rev, stats);
-                return stats;
-            });
+        Objects.requireNonNull(consumer);
+        return new TimelineCollector<>(() -> new CompoundAccumulation<>(new CompoundTimeline<>(start, end, period, clazz), clazz, consumer));
     }
 
-    private static class TimelineCollector<V, T extends Timeline<V>> implements Collector<XMLRevision, T, T> {
-        private final Supplier<T> supplier;
-        private final Function<XMLRevision, V> processor;
+    // per-page state lives in the accumulation container; as long as no page is split across containers
+    // (see PageAlignedSpliterator), partial timelines can be combined entry by entry
+    private static class TimelineCollector<T extends Timeline<?>, A extends Accumulation<T>> implements Collector<XMLRevision, A, T> {
+        private final Supplier<A> supplier;
 
-        private XMLRevision previousRev;
-        private Iterator<Timeline.Entry<V>> iterator;
-        private Timeline.Entry<V> referenceEntry;
-
-        public TimelineCollector(Supplier<T> supplier, Function<XMLRevision, V> bifunction) {
+        public TimelineCollector(Supplier<A> supplier) {
             this.supplier = Objects.requireNonNull(supplier);
-            this.processor = Objects.requireNonNull(bifunction);
         }
 
         @Override
-        public Supplier<T> supplier() {
+        public Supplier<A> supplier() {
             return supplier;
         }
 
         @Override
-        public BiConsumer<T, XMLRevision> accumulator() {
-            return (timeline, rev) -> {
-                if (previousRev == null || previousRev.getPageid() != rev.getPageid()) {
-                    // either the first revision ever processed, or a new page
-
-                    if (referenceEntry != null && previousRev != null) {
-                        // process the last revision of the previous page
-                        applyValue(previousRev);
-                    }
-
-                    iterator = timeline.iterator();
-
-                    advanceReference(OffsetDateTime.parse(rev.getTimestamp()));
-                } else if (referenceEntry != null) {
-                    // the same page as the previous revision, and still within the targeted timeline range
-                    var thisTimestamp = OffsetDateTime.parse(rev.getTimestamp());
-
-                    if (thisTimestamp.isAfter(referenceEntry.getTime())) {
-                        // this revision is newer than the last timeline entry, therefore process it
-                        applyValue(previousRev, thisTimestamp);
-                    }
-                }
+        public BiConsumer<A, XMLRevision> accumulator() {
+            return Accumulation::accept;
+        }
 
-                previousRev = rev;
+        @Override
+        public BinaryOperator<A> combiner() {
+            return (left, right) -> {
+                // both sides end with a complete page
+                left.flush();
+                right.flush();
+                left.merge(right);
+                return left;
             };
         }
 
         @Override
-        public BinaryOperator<T> combiner() {
-            // should never be called on sequential streams
-            return null;
+        public Function<A, T> finisher() {
+            return acc -> {
+                acc.flush();
+                return acc.timeline;
+            };
         }
 
         @Override
-        public Function<T, T> finisher() {
-            if (referenceEntry != null && previousRev != null) {
+        public Set<Characteristics> characteristics() {
+            return Collections.emptySet();
+        }
+    }
+
+    // each timeline entry receives the value of the latest revision of every page as of the entry's time;
+    // values are computed into a per-container scratch and added to whole ranges of entries at once
+    private static abstract class Accumulation<T extends Timeline<?>> {
+        final T timeline;
+
+        private XMLRevision previousRev;
+        private int referenceIndex = -1; // closest timeline entry after the previous revision, -1 if depleted
+
+        Accumulation(T timeline) {
+            this.timeline = timeline;
+        }
+
+        abstract void compute(XMLRevision rev);
+
+        // adds the last computed value to entries [from, to)
+        abstract void apply(int from, int to);
+
+        abstract void merge(Accumulation<T> other);
+
+        void accept(XMLRevision rev) {
+            if (previousRev == null || previousRev.getPageid() != rev.getPageid()) {
+                // either the first revision ever processed, or a new page
+                flush();
+                advanceReference(rev.getEpochSecond());
+            } else if (referenceIndex != -1) {
+                // the same page as the previous revision, and still within the targeted timeline range
+                var thisTimestamp = rev.getEpochSecond();
+
+                // not against the entry's epoch second, which is rounded up
+                if (timeline.indexAfter(thisTimestamp) > referenceIndex) {
+                    // this revision is newer than the last timeline entry, therefore process it
+                    var from = referenceIndex;
+                    compute(previousRev);
+                    advanceReference(thisTimestamp);
+                    apply(from, referenceIndex != -1 ? referenceIndex : timeline.size());
+                }
+            }
+
+            previousRev = rev;
+        }
+
+        void flush() {
+            if (referenceIndex != -1 && previousRev != null) {
                 // process the last revision of the last page
-                applyValue(previousRev);
+                compute(previousRev);
+                apply(referenceIndex, timeline.size());
             }
 
-            return UnaryOperator.identity();
+            previousRev = null;
+            referenceIndex = -1;
         }
 
-        @Override
-        public Set<Characteristics> characteristics() {
-            return Collections.emptySet();
+        private void advanceReference(long epochSecond) {
+            var index = timeline.indexAfter(epochSecond);
+            referenceIndex = index < timeline.size() ? index : -1;
         }
+    }
+
+    private static class SimpleAccumulation extends Accumulation<SimpleTimeline> {
+        private final ToLongFunction<XMLRevision> mapper;
+        private long scratch;
 
-        private void applyValue(XMLRevision rev) {
-            applyValue(rev, null);
+        SimpleAccumulation(SimpleTimeline timeline, ToLongFunction<XMLRevision> mapper) {
+            super(timeline);
+            this.mapper = mapper;
         }
 
-        private void applyValue(XMLRevision rev, OffsetDateTime refTime) {
-            var value = processor.apply(rev);
-            referenceEntry.combine(value);
-            advanceReference(refTime, value);
+        @Override
+        void compute(XMLRevision rev) {
+            scratch = mapper.applyAsLong(rev);
         }
 
-        private void advanceReference(OffsetDateTime refTime) {
-            advanceReference(refTime, null);
+        @Override
+        void apply(int from, int to) {
+            timeline.add(from, to, scratch);
         }
 
-        private void advanceReference(OffsetDateTime refTime, V value) {
-            while (iterator.hasNext()) {
-                // advance the iterator until the closest timeline entry after this revision
-                referenceEntry = iterator.next();
+        @Override
+        void merge(Accumulation<SimpleTimeline> other) {
+            timeline.merge(other.timeline);
+        }
+    }
 
-                if (refTime != null && referenceEntry.getTime().isAfter(refTime)) {
-                    return; // preserve this entry for later
-                }
+    private static class CompoundAccumulation<E extends Enum<E>> extends Accumulation<CompoundTimeline<E>> {
+        private final BiConsumer<XMLRevision, EnumStats<E>> consumer;
+        private final EnumStats<E> scratch;
 
-                if (value != null) {
-                    // apply the same value to all intermediate timeline entries
-                    referenceEntry.combine(value);
-                }
-            }
+        CompoundAccumulation(CompoundTimeline<E> timeline, Class<E> clazz, BiConsumer<XMLRevision, EnumStats<E>> consumer) {
+            super(timeline);
+            this.consumer = consumer;
+            this.scratch = new EnumStats<>(clazz);
+        }
+
+        @Override
+        void compute(XMLRevision rev) {
+            scratch.clear();
+            consumer.accept(rev, scratch);
+        }
 
-            referenceEntry = null; // timeline depleted, no eligible entries left
+        @Override
+        void apply(int from, int to) {
+            timeline.add(from, to, scratch);
+        }
+
+        @Override
+        void merge(Accumulation<CompoundTimeline<E>> other) {
+            timeline.merge(other.timeline);
         }
     }
 }
@@ -0,0 +1,183 @@
+package com.github.wikibot.dumps;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// immutable set of page titles stored as concatenated UTF-8 bytes behind an open-addressing hash table;
+// lookups encode the query on the fly, hence no strings are created for substrings of index lines
+final class TitleSet {
+    private final byte[] bytes;
+    private final int[] offsets; // title i spans [offsets[i], offsets[i + 1])
+    private final int[] slots; // title index plus one, zero marks an empty slot
+    private final int mask;
+
+    private TitleSet(byte[] bytes, int[] offsets) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+
+        var count = offsets.length - 1;
+        var capacity = Integer.highestOneBit(Math.max(count * 2, 16) - 1) << 1; // load factor <= 0.5
+        slots = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < count; i++) {
+            var slot = hash(bytes, offsets[i], offsets[i + 1]) & mask;
+
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = i + 1;
+        }
+    }
+
+    static TitleSet of(Collection<String> titles) {
+        var unique = titles instanceof HashSet<String> set ? set : new HashSet<>(titles);
+        var encoded = unique.stream().map(title -> title.getBytes(StandardCharsets.UTF_8)).toList();
+        var offsets = new int[encoded.size() + 1];
+        var total = 0L;
+
+        for (int i = 0; i < encoded.size(); i++) {
+            total += encoded.get(i).length;
+
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many titles");
+            }
+
+            offsets[i + 1] = (int)total;
+        }
+
+        var bytes = new byte[(int)total];
+
+        for (int i = 0; i < encoded.size(); i++) {
+            System.arraycopy(encoded.get(i), 0, bytes, offsets[i], encoded.get(i).length);
+        }
+
+        return new TitleSet(bytes, offsets);
+    }
+
+    int size() {
+        return offsets.length - 1;
+    }
+
+    boolean contains(String title) {
+        return contains(title, 0, title.length());
+    }
+
+    boolean contains(CharSequence cs, int start, int end) {
+        var slot = hash(cs, start, end) & mask;
+        int entry;
+
+        while ((entry = slots[slot]) != 0) {
+            if (equalsAt(entry - 1, cs, start, end)) {
+                return true;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    Stream<String> stream() {
+        return IntStream.range(0, size())
+            .mapToObj(i -> new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8));
+    }
+
+    // FNV-1a, same as in MappedMultistreamIndex
+    private static int hash(byte[] bytes, int start, int end) {
+        var h = 0xcbf29ce484222325L;
+
+        for (int i = start; i < end; i++) {
+            h = (h ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+        }
+
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private static int hash(CharSequence cs, int start, int end) {
+        var h = 0xcbf29ce484222325L;
+        var encoder = new Utf8Cursor(cs, start, end);
+        int b;
+
+        while ((b = encoder.next()) != -1) {
+            h = (h ^ b) * 0x100000001b3L;
+        }
+
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private boolean equalsAt(int index, CharSequence cs, int start, int end) {
+        var encoder = new Utf8Cursor(cs, start, end);
+        var pos = offsets[index];
+        var limit = offsets[index + 1];
+        int b;
+
+        while ((b = encoder.next()) != -1) {
+            if (pos == limit || (bytes[pos++] & 0xff) != b) {
+                return false;
+            }
+        }
+
+        return pos == limit;
+    }
+
+    // yields the UTF-8 encoding of a char range byte by byte; unpaired surrogates become '?' like String.getBytes()
+    private static class Utf8Cursor {
+        private final CharSequence cs;
+        private final int end;
+        private int pos;
+        private int pending; // remaining bytes of the current code point, lowest byte first
+        private int pendingCount;
+
+        Utf8Cursor(CharSequence cs, int start, int end) {
+            this.cs = cs;
+            this.pos = start;
+            this.end = end;
+        }
+
+        int next() {
+            if (pendingCount > 0) {
+                var b = pending & 0xff;
+                pending >>>= 8;
+                pendingCount--;
+                return b;
+            }
+
+            if (pos >= end) {
+                return -1;
+            }
+
+            int cp = cs.charAt(pos++);
+
+            if (cp < 0x80) {
+                return cp;
+            }
+
+            if (Character.isHighSurrogate((char)cp) && pos < end && Character.isLowSurrogate(cs.charAt(pos))) {
+                cp = Character.toCodePoint((char)cp, cs.charAt(pos++));
+            } else if (Character.isSurrogate((char)cp)) {
+                return '?';
+            }
+
+            if (cp < 0x800) {
+                push(0x80 | (cp & 0x3f), 1);
+                return 0xc0 | (cp >>> 6);
+            } else if (cp < 0x10000) {
+                push((0x80 | ((cp >>> 6) & 0x3f)) | (0x80 | (cp & 0x3f)) << 8, 2);
+                return 0xe0 | (cp >>> 12);
+            } else {
+                push((0x80 | ((cp >>> 12) & 0x3f)) | (0x80 | ((cp >>> 6) & 0x3f)) << 8 | (0x80 | (cp & 0x3f)) << 16, 3);
+                return 0xf0 | (cp >>> 18);
+            }
+        }
+
+        private void push(int bytes, int count) {
+            pending = bytes;
+            pendingCount = count;
+        }
+    }
+}
@@ -2,17 +2,31 @@ package com.github.wikibot.dumps;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
@@ -20,25 +34,108 @@ import org.apache.commons.compress.compressors.CompressorStreamFactory;
 public class XMLConcatenatedStreamDumpReader extends AbstractXMLDumpReader {
     private final FileChannel dumpChannel;
     private final InputStream indexStream;
+    private final MappedMultistreamIndex mappedIndex;
     private final Filterable filter;
 
+    private final Set<AutoCloseable> openReaders = ConcurrentHashMap.newKeySet();
+
     private List<Long> availableChunks;
+    private long[] cumulativeChunkSizes; // number of pages in preceding chunks, plus total at the end
     private long size;
 
+    private int decompressionThreads = 1;
+    private int maxInFlight = 1;
+    private int readAheadSize = ChannelReadAhead.DEFAULT_WINDOW_SIZE;
+
+    private DumpStatistics statistics;
+    private Predicate<DumpStatistics.ZoneMap> zoneFilter;
+    private Path statisticsSidecar;
+    private Path statisticsSource;
+    private DumpStatistics.Recorder recorder;
+
     private XMLConcatenatedStreamDumpReader(FileChannel fch, InputStream index, Filterable filter) {
         dumpChannel = Objects.requireNonNull(fch);
         indexStream = Objects.requireNonNull(index);
+        mappedIndex = null;
+        this.filter = Objects.requireNonNull(filter);
+    }
+
+    private XMLConcatenatedStreamDumpReader(FileChannel fch, MappedMultistreamIndex index, Filterable filter) {
+        dumpChannel = Objects.requireNonNull(fch);
+        indexStream = null;
+        mappedIndex = Objects.requireNonNull(index);
         this.filter = Objects.requireNonNull(filter);
     }
 
     public static XMLConcatenatedStreamDumpReader ofTitles(FileChannel fch, InputStream index, Set<String> titles) {
-        return new XMLConcatenatedStreamDumpReader(fch, index, new TitleFilter(titles));
+        return ofTitles(fch, index, TitleSet.of(titles));
     }
 
     public static XMLConcatenatedStreamDumpReader ofPageIds(FileChannel fch, InputStream index, Set<Long> pageIds) {
+        return ofPageIds(fch, index, PageIdSet.of(pageIds));
+    }
+
+    public static XMLConcatenatedStreamDumpReader ofAllPages(FileChannel fch, InputStream index) {
+        return new XMLConcatenatedStreamDumpReader(fch, index, new AcceptAllFilter());
+    }
+
+    static XMLConcatenatedStreamDumpReader ofTitles(FileChannel fch, InputStream index, TitleSet titles) {
+        return new XMLConcatenatedStreamDumpReader(fch, index, new TitleFilter(titles));
+    }
+
+    static XMLConcatenatedStreamDumpReader ofPageIds(FileChannel fch, InputStream index, PageIdSet pageIds) {
         return new XMLConcatenatedStreamDumpReader(fch, index, new PageIdFilter(pageIds));
     }
 
+    static XMLConcatenatedStreamDumpReader ofTitles(FileChannel fch, MappedMultistreamIndex index, TitleSet titles) {
+        return new XMLConcatenatedStreamDumpReader(fch, index, new TitleFilter(titles));
+    }
+
+    static XMLConcatenatedStreamDumpReader ofPageIds(FileChannel fch, MappedMultistreamIndex index, PageIdSet pageIds) {
+        return new XMLConcatenatedStreamDumpReader(fch, index, new PageIdFilter(pageIds));
+    }
+
+    static XMLConcatenatedStreamDumpReader ofAllPages(FileChannel fch, MappedMultistreamIndex index) {
+        return new XMLConcatenatedStreamDumpReader(fch, index, new AcceptAllFilter());
+    }
+
+    public XMLConcatenatedStreamDumpReader withConcurrentDecoding(int threads, int maxInFlight) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of decompression threads: " + threads);
+        }
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Illegal number of chunks in flight: " + maxInFlight);
+        }
+
+        this.decompressionThreads = threads;
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    // size of each sequential read on the dump file, only used without concurrent decoding
+    public XMLConcatenatedStreamDumpReader withReadAhead(int bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("Illegal read-ahead size: " + bytes);
+        }
+
+        this.readAheadSize = bytes;
+        return this;
+    }
+
+    XMLConcatenatedStreamDumpReader withStatistics(DumpStatistics statistics, Predicate<DumpStatistics.ZoneMap> zoneFilter) {
+        this.statistics = Objects.requireNonNull(statistics);
+        this.zoneFilter = Objects.requireNonNull(zoneFilter);
+        return this;
+    }
+
+    // statistics are only recorded on unfiltered scans, and stored once all chunks have been read
+    XMLConcatenatedStreamDumpReader withStatisticsRecorder(Path sidecar, Path source) {
+        this.statisticsSidecar = Objects.requireNonNull(sidecar);
+        this.statisticsSource = Objects.requireNonNull(source);
+        return this;
+    }
+
     @Override
     public Optional<Long> getSize() {
         maybeRetrieveOffsets();
@@ -50,7 +147,35 @@ public class XMLConcatenatedStreamDumpReader extends AbstractXMLDumpReader {
             return;
         }
 
-        var filteredOffsets = new LinkedHashSet<Long>(100000);
+        var offsets = mappedIndex != null ? retrieveMappedOffsets() : retrieveOffsets();
+
+        if (statistics != null) {
+            var total = offsets.size();
+            offsets.keySet().removeIf(offset -> statistics.getZone(offset).filter(zoneFilter.negate()).isPresent());
+            System.out.printf("Multistream chunks skipped by zone maps: %d/%d%n", total - offsets.size(), total);
+        }
+
+        // index order should match file order already, the read-ahead window depends on it
+        var sorted = new ArrayList<>(offsets.keySet());
+        sorted.sort(null);
+
+        availableChunks = Collections.unmodifiableList(sorted);
+        cumulativeChunkSizes = new long[availableChunks.size() + 1];
+
+        for (int i = 0; i < availableChunks.size(); i++) {
+            cumulativeChunkSizes[i + 1] = cumulativeChunkSizes[i] + offsets.get(availableChunks.get(i));
+        }
+
+        size = cumulativeChunkSizes[availableChunks.size()];
+        metrics.expectPages(size);
+
+        if (statisticsSidecar != null && filter instanceof AcceptAllFilter) {
+            recorder = new DumpStatistics.Recorder(statisticsSidecar, statisticsSource, size);
+        }
+    }
+
+    private LinkedHashMap<Long, Long> retrieveOffsets() {
+        var filteredOffsets = new LinkedHashMap<Long, Long>(100000); // offset -> page count
         var dumpSize = 0L;
         var lastOffset = 0L;
         var accumulator = 0;
@@ -76,21 +201,23 @@ public class XMLConcatenatedStreamDumpReader extends AbstractXMLDumpReader {
             var offset = 0L;
 
             try {
-                offset = Long.parseLong(line.substring(0, firstSeparator));
-            } catch (StringIndexOutOfBoundsException e) {
+                offset = Long.parseLong(line, 0, firstSeparator, 10);
+            } catch (IndexOutOfBoundsException e) {
                 throw new RuntimeException("Unexpected: " + line, e);
             }
 
             if (offset != lastOffset) {
+                if (addCurrentOffsetSize) {
+                    filteredOffsets.put(lastOffset, (long)accumulator);
+                }
+
                 lastOffset = offset;
                 addCurrentOffsetSize = false;
                 accumulator = 0;
                 offsetCount++;
             }
 
-            if (filter.test(line.substring(firstSeparator + 1))) {
-                filteredOffsets.add(offset);
-
+            if (filter.test(line, firstSeparator + 1)) {
                 if (!addCurrentOffsetSize) {
                     dumpSize += accumulator;
                     addCurrentOffsetSize = true;
@@ -99,41 +226,246 @@ public class XMLConcatenatedStreamDumpReader extends AbstractXMLDumpReader {
 
             if (addCurrentOffsetSize) {
                 dumpSize++;
-            } else {
-                accumulator++;
             }
 
+            accumulator++;
             pageCount++;
         }
 
-        availableChunks = Collections.unmodifiableList(new ArrayList<>(filteredOffsets));
+        if (addCurrentOffsetSize) {
+            filteredOffsets.put(lastOffset, (long)accumulator);
+        }
+
+        System.out.printf("Multistream chunks retrieved: %d/%d (dump size: %d/%d)%n",
+                          filteredOffsets.size(), offsetCount, dumpSize, pageCount);
+
+        return filteredOffsets;
+    }
+
+    private LinkedHashMap<Long, Long> retrieveMappedOffsets() {
+        var selected = filter.select(mappedIndex);
+        var offsets = new LinkedHashMap<Long, Long>(selected.cardinality() * 2);
+        var dumpSize = 0L;
+
+        for (int chunk = selected.nextSetBit(0); chunk >= 0; chunk = selected.nextSetBit(chunk + 1)) {
+            offsets.put(mappedIndex.getChunkOffset(chunk), (long)mappedIndex.getChunkPageCount(chunk));
+            dumpSize += mappedIndex.getChunkPageCount(chunk);
+        }
 
         System.out.printf("Multistream chunks retrieved: %d/%d (dump size: %d/%d)%n",
-                          availableChunks.size(), offsetCount, dumpSize, pageCount);
+                          offsets.size(), mappedIndex.getChunkCount(), dumpSize, mappedIndex.getPageCount());
 
-        size = dumpSize;
+        return offsets;
     }
 
     @Override
     protected InputStream getInputStream() {
         maybeRetrieveOffsets();
-        return new RootlessXMLInputStream(dumpChannel, availableChunks);
+        return getInputStream(availableChunks);
+    }
+
+    private InputStream getInputStream(List<Long> chunks) {
+        if (decompressionThreads > 1) {
+            return metrics.countDecompressed(new ConcurrentRootlessXMLInputStream(dumpChannel, chunks, decompressionThreads, maxInFlight, metrics));
+        } else {
+            return metrics.countDecompressed(new RootlessXMLInputStream(dumpChannel, chunks, readAheadSize, metrics));
+        }
     }
 
     @Override
     public Stream<XMLRevision> getStAXReaderStream() {
-        return super.getStAXReaderStream().filter(filter::filter);
+        // splits along chunk boundaries when run in parallel
+        return StreamSupport.stream(getStAXReaderSpliterator(), false).onClose(this::closeOpenReaders);
+    }
+
+    @Override
+    public Stream<XMLRevision> getScannerReaderStream() {
+        return StreamSupport.stream(getScannerReaderSpliterator(), false).onClose(this::closeOpenReaders);
+    }
+
+    Spliterator<XMLRevision> getStAXReaderSpliterator() {
+        maybeRetrieveOffsets();
+        return metrics.wrap(new ChunkSpliterator(0, availableChunks.size(), false));
+    }
+
+    Spliterator<XMLRevision> getScannerReaderSpliterator() {
+        maybeRetrieveOffsets();
+        return metrics.wrap(new ChunkSpliterator(0, availableChunks.size(), true));
+    }
+
+    void closeOpenReaders() {
+        for (var reader : openReaders) {
+            try {
+                closeReader(reader);
+            } finally {
+                openReaders.remove(reader);
+            }
+        }
+    }
+
+    private static void closeReader(AutoCloseable reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
+    private class ChunkSpliterator implements Spliterator<XMLRevision> {
+        private int from;
+        private final int to;
+        private final boolean useScanner;
+
+        private AutoCloseable reader;
+        private Iterator<XMLRevision> iterator;
+        private long consumed;
+        private int currentChunk;
+
+        ChunkSpliterator(int from, int to, boolean useScanner) {
+            this.from = from;
+            this.to = to;
+            this.useScanner = useScanner;
+        }
+
+        private void open() {
+            var input = getInputStream(availableChunks.subList(from, to));
+
+            if (useScanner) {
+                var scanner = new ByteScannerDumpReader(input, 0, lazyText, fields);
+                reader = scanner;
+                iterator = scanner.iterator();
+            } else {
+                try {
+                    var streamReader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+                    reader = streamReader::close;
+                    iterator = new StAXDumpReader(streamReader, 0, lazyText, fields).iterator();
+                } catch (XMLStreamException e) {
+                    throw new UncheckedIOException(new IOException(e));
+                }
+            }
+
+            openReaders.add(reader);
+            currentChunk = from;
+        }
+
+        private void close() {
+            try {
+                closeReader(reader);
+            } finally {
+                openReaders.remove(reader);
+                from = to;
+            }
+
+            if (recorder != null) {
+                recorder.complete();
+            }
+        }
+
+        private void record(XMLRevision rev) {
+            // one revision per page, hence the chunk can be told apart by page counts
+            while (cumulativeChunkSizes[currentChunk + 1] <= cumulativeChunkSizes[from] + consumed) {
+                currentChunk++;
+            }
+
+            recorder.record(availableChunks.get(currentChunk), rev);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XMLRevision> action) {
+            if (iterator == null) {
+                if (from >= to) {
+                    return false;
+                }
+
+                open();
+            }
+
+            while (from < to && iterator.hasNext()) {
+                var rev = iterator.next();
+
+                if (recorder != null) {
+                    record(rev);
+                }
+
+                consumed++;
+
+                if (filter.filter(rev)) {
+                    action.accept(rev);
+                    return true;
+                }
+            }
+
+            if (from < to) {
+                close();
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<XMLRevision> trySplit() {
+            if (iterator != null || to - from < 2) {
+                return null;
+            }
+
+            var mid = (from + to) >>> 1;
+            var prefix = new ChunkSpliterator(from, mid, useScanner);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.max(cumulativeChunkSizes[to] - cumulativeChunkSizes[from] - consumed, 0);
+        }
+
+        @Override
+        public int characteristics() {
+            if (filter instanceof AcceptAllFilter) {
+                // one revision per page as listed in the index file
+                return StAXDumpReader.BASIC_CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED;
+            } else {
+                return StAXDumpReader.BASIC_CHARACTERISTICS;
+            }
+        }
+
+        @Override
+        public Comparator<? super XMLRevision> getComparator() {
+            return null; // natural order
+        }
     }
 
     private interface Filterable {
         boolean filter(XMLRevision rev);
-        boolean test(String line);
+        boolean test(String line, int start); // index line without the offset part
+        BitSet select(MappedMultistreamIndex index);
+    }
+
+    private static class AcceptAllFilter implements Filterable {
+        @Override
+        public boolean filter(XMLRevision rev) {
+            return true;
+        }
+
+        @Override
+        public boolean test(String line, int start) {
+            return true;
+        }
+
+        @Override
+        public BitSet select(MappedMultistreamIndex index) {
+            var chunks = new BitSet(index.getChunkCount());
+            chunks.set(0, index.getChunkCount());
+            return chunks;
+        }
     }
 
     private static class TitleFilter implements Filterable {
-        private final Set<String> titles;
+        private final TitleSet titles;
 
-        TitleFilter(Set<String> titles) {
+        TitleFilter(TitleSet titles) {
             this.titles = titles;
         }
 
@@ -143,16 +475,20 @@ public class XMLConcatenatedStreamDumpReader extends AbstractXMLDumpReader {
         }
 
         @Override
-        public boolean test(String line) {
-            var title = line.substring(line.indexOf(':') + 1);
-            return titles.contains(title);
+        public boolean test(String line, int start) {
+            return titles.contains(line, line.indexOf(':', start) + 1, line.length());
+        }
+
+        @Override
+        public BitSet select(MappedMultistreamIndex index) {
+            return index.selectChunksByTitles(titles.stream());
         }
     }
 
     private static class PageIdFilter implements Filterable {
-        private final Set<Long> ids;
+        private final PageIdSet ids;
 
-        PageIdFilter(Set<Long> ids) {
+        PageIdFilter(PageIdSet ids) {
             this.ids = ids;
         }
 
@@ -162,9 +498,13 @@ public class XMLConcatenatedStreamDumpReader extends AbstractXMLDumpReader {
         }
 
         @Override
-        public boolean test(String line) {
-            var id = Long.parseLong(line.substring(0, line.indexOf(':')));
-            return ids.contains(id);
+        public boolean test(String line, int start) {
+            return ids.contains(line, start, line.indexOf(':', start));
+        }
+
+        @Override
+        public BitSet select(MappedMultistreamIndex index) {
+            return index.selectChunksByPageIds(ids.stream());
         }
     }
 }
@@ -9,9 +9,12 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -19,11 +22,14 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.Spliterators;
+import java.util.Spliterator;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -39,16 +45,30 @@ import com.github.wikibot.utils.Login;
 public class XMLDump {
     private static final Pattern PATT_FILENAME_ID = Pattern.compile("(?<slice>\\d+)\\.(?:txt|xml)(?:-p(?<start>\\d+)p(?<end>\\d+))?");
 
-    private static final String STATUS_JSON = "dumpstatus.json";
+    static final String STATUS_JSON = "dumpstatus.json";
     private static final String STATUS_INCR = "status.txt";
+    private static final int DEFAULT_HISTORY_WINDOW = 1 << 10;
 
     protected final DumpHandler handler;
     protected final String database;
     protected final String dirName;
     protected final List<String> filenames;
 
-    protected Set<String> titles;
-    protected SortedSet<Long> ids;
+    protected TitleSet titles;
+    protected PageIdSet ids;
+    protected Set<Integer> namespaces;
+    protected boolean excludeRedirects;
+    protected boolean lazyText;
+
+    int decompressionThreads = 1;
+    int maxInFlight = 1;
+    Path cacheDir;
+    Set<XMLRevisionField> fields = EnumSet.allOf(XMLRevisionField.class);
+    boolean useByteScanner;
+    Duration progressInterval = Duration.ZERO;
+    boolean transcode;
+    int readAheadSize = ChannelReadAhead.DEFAULT_WINDOW_SIZE;
+    boolean trackRevisions;
 
     XMLDump(DumpHandler handler, String database, String dirName, List<String> filenames) {
         this.handler = Objects.requireNonNull(handler);
@@ -61,20 +81,196 @@ public class XMLDump {
         }
     }
 
-    private Stream<XMLRevision> streamInternal() {
+    private Stream<XMLRevision> streamInternal(DumpMetrics metrics) {
         if (filenames.size() == 1) {
             // preserve SIZED+SUBSIZED characteristics
-            return new XMLDumpReader(handler.getInputStream(database, dirName, filenames.get(0))).getStAXReaderStream();
+            metrics.expectBytes(getLocalSize(filenames.get(0)));
+            return streamFile(filenames.get(0), metrics);
         }
 
-        var stream = filenames.stream()
-            .filter(this::tryFilterPageId)
-            .map(filename -> handler.getInputStream(database, dirName, filename))
-            .map(XMLDumpReader::new)
-            .flatMap(XMLDumpReader::getStAXReaderStream);
+        // don't flatMap, its iterator would buffer each whole file in memory
+        var streams = new ConcurrentLinkedQueue<Stream<XMLRevision>>();
 
-        var sp = Spliterators.spliteratorUnknownSize(stream.iterator(), StAXDumpReader.BASIC_CHARACTERISTICS);
-        return StreamSupport.stream(sp, false);
+        var selected = filenames.stream().filter(this::tryFilterPageId).toList();
+        selected.forEach(filename -> metrics.expectBytes(getLocalSize(filename)));
+
+        var sources = selected.stream()
+            .<Supplier<Spliterator<XMLRevision>>>map(filename -> () -> {
+                var stream = streamFile(filename, metrics);
+                streams.add(stream);
+                return stream.spliterator();
+            })
+            .toList();
+
+        var sp = new ConcatenatedSpliterator<>(sources, StAXDumpReader.BASIC_CHARACTERISTICS);
+        return StreamSupport.stream(sp, false).onClose(() -> streams.forEach(Stream::close));
+    }
+
+    private XMLDumpReader makeReader(String filename, DumpMetrics metrics) {
+        var reader = new XMLDumpReader(handler.getInputStream(database, dirName, filename), decompressionThreads, maxInFlight);
+        reader.lazyText = lazyText;
+        reader.fields = fields;
+        reader.metrics = metrics;
+        return reader;
+    }
+
+    private Stream<XMLRevision> streamFile(String filename, DumpMetrics metrics) {
+        if (!tryFilterStatistics(filename)) {
+            metrics.expectBytes(-getLocalSize(filename));
+            return Stream.empty();
+        }
+
+        var transcoded = findTranscodedCopy(filename);
+
+        if (transcoded.isPresent()) {
+            return streamTranscoded(filename, transcoded.get(), metrics);
+        }
+
+        var reader = makeReader(filename, metrics);
+        var stream = useByteScanner ? reader.getScannerReaderStream() : reader.getStAXReaderStream();
+
+        if (canRecordStatistics() && titles == null && ids == null && loadStatistics(filename).isEmpty()) {
+            // first pass over this file, gather statistics for the next ones
+            var recorder = new DumpStatistics.Recorder(getStatisticsPath(filename), getSourcePath(filename), -1);
+            var sp = recorder.wrap(0, stream.spliterator());
+            return StreamSupport.stream(sp, false).onClose(stream::close);
+        }
+
+        return stream;
+    }
+
+    // transcoded copies are preferred whenever present, but only created on demand if so configured
+    private Optional<Path> findTranscodedCopy(String filename) {
+        if (cacheDir == null || !(handler instanceof LocalDumpHandler) || !DumpTranscoder.canTranscode(filename)) {
+            return Optional.empty();
+        }
+
+        var dataPath = DumpTranscoder.makeDataPath(cacheDir, database, dirName, filename);
+        var copy = DumpTranscoder.find(dataPath, getSourcePath(filename));
+
+        if (copy.isEmpty() && transcode) {
+            var reader = new XMLDumpReader(handler.getInputStream(database, dirName, filename), decompressionThreads, maxInFlight);
+            DumpTranscoder.transcode(reader.getInputStream(), dataPath, getSourcePath(filename));
+            return Optional.of(dataPath);
+        }
+
+        return copy;
+    }
+
+    // read like a multistream dump, with its own chunk-level statistics
+    private Stream<XMLRevision> streamTranscoded(String filename, Path dataPath, DumpMetrics metrics) {
+        System.out.println("Reading transcoded copy of " + filename);
+
+        final FileChannel dumpChannel;
+
+        try {
+            dumpChannel = FileChannel.open(dataPath);
+            metrics.expectBytes(Files.size(dataPath) - getLocalSize(filename));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var indexPath = DumpTranscoder.makeIndexPath(dataPath);
+
+        var mappedIndex = MappedMultistreamIndex.obtain(cacheDir, database, dirName, indexPath, () -> {
+            try {
+                return Files.newInputStream(indexPath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        final XMLConcatenatedStreamDumpReader reader;
+
+        if (titles != null) {
+            reader = XMLConcatenatedStreamDumpReader.ofTitles(dumpChannel, mappedIndex, titles);
+        } else if (ids != null) {
+            reader = XMLConcatenatedStreamDumpReader.ofPageIds(dumpChannel, mappedIndex, ids);
+        } else {
+            reader = XMLConcatenatedStreamDumpReader.ofAllPages(dumpChannel, mappedIndex);
+        }
+
+        if (canRecordStatistics()) {
+            var sidecar = DumpStatistics.makePath(cacheDir, database, dirName, dataPath.getFileName().toString());
+            var stats = DumpStatistics.load(sidecar, dataPath);
+
+            if (stats.isPresent()) {
+                if (canUseStatistics()) {
+                    reader.withStatistics(stats.get(), this::mayContain);
+                }
+            } else if (titles == null && ids == null) {
+                reader.withStatisticsRecorder(sidecar, dataPath);
+            }
+        }
+
+        reader.lazyText = lazyText;
+        reader.fields = fields;
+        reader.metrics = metrics;
+        reader.withConcurrentDecoding(decompressionThreads, maxInFlight).withReadAhead(readAheadSize);
+
+        var stream = useByteScanner ? reader.getScannerReaderStream() : reader.getStAXReaderStream();
+
+        return stream.onClose(() -> {
+            try {
+                dumpChannel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    protected boolean tryFilterStatistics(String filename) {
+        if (canUseStatistics()) {
+            var stats = loadStatistics(filename);
+
+            if (stats.isPresent()) {
+                return stats.get().getZone(0).map(this::mayContain).orElse(true);
+            }
+        }
+
+        return true;
+    }
+
+    // statistics are gathered on any full scan of a local dump, whether filtered by page predicates or not
+    protected boolean canRecordStatistics() {
+        return cacheDir != null && handler instanceof LocalDumpHandler;
+    }
+
+    // ...but only used if there is something to prune, and not while a revision map is recorded (it needs every page)
+    protected boolean canUseStatistics() {
+        return canRecordStatistics() && hasPagePredicates() && !needsRevisionMap();
+    }
+
+    protected Optional<DumpStatistics> loadStatistics(String filename) {
+        return DumpStatistics.load(getStatisticsPath(filename), getSourcePath(filename));
+    }
+
+    protected Path getStatisticsPath(String filename) {
+        return DumpStatistics.makePath(cacheDir, database, dirName, filename);
+    }
+
+    protected Path getSourcePath(String filename) {
+        return Paths.get(handler.makePath(database, dirName, filename));
+    }
+
+    protected boolean hasPagePredicates() {
+        return namespaces != null || excludeRedirects;
+    }
+
+    protected boolean testPage(XMLRevision rev) {
+        return (namespaces == null || namespaces.contains(rev.getNamespace())) && (!excludeRedirects || !rev.isRedirect());
+    }
+
+    protected boolean mayContain(DumpStatistics.ZoneMap zone) {
+        if (namespaces != null && !zone.mayContainNamespace(namespaces)) {
+            return false;
+        }
+
+        if (excludeRedirects && !zone.mayContainNonRedirects()) {
+            return false;
+        }
+
+        return ids == null || zone.mayContainPageIds(ids.first(), ids.last());
     }
 
     protected boolean tryFilterPageId(String filename) {
@@ -97,13 +293,125 @@ public class XMLDump {
     }
 
     public Stream<XMLRevision> stream() {
+        var metrics = newMetrics();
+        final Stream<XMLRevision> stream;
+
         if (titles != null) {
-            return streamInternal().filter(rev -> titles.contains(rev.getTitle()));
+            stream = streamInternal(metrics).filter(rev -> titles.contains(rev.getTitle()));
         } else if (ids != null) {
-            return streamInternal().filter(rev -> ids.contains(rev.getPageid()));
+            stream = streamInternal(metrics).filter(rev -> ids.contains(rev.getPageid()));
         } else {
-            return streamInternal();
+            stream = recordRevisions(streamInternal(metrics));
+        }
+
+        return (hasPagePredicates() ? stream.filter(this::testPage) : stream).onClose(metrics::finish);
+    }
+
+    // one per stream, the progress reporter starts along with the first revision read
+    protected DumpMetrics newMetrics() {
+        return new DumpMetrics(getDescriptiveFilename(), progressInterval);
+    }
+
+    // compressed size for ETA estimations, remote files are not known in advance
+    protected long getLocalSize(String filename) {
+        if (handler instanceof LocalDumpHandler) {
+            try {
+                return Files.size(getSourcePath(filename));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
+
+        return 0;
+    }
+
+    public Stream<XMLRevision> parallelStream() {
+        return stream().parallel();
+    }
+
+    // revisions grouped by page, meant for history dumps; pages with more revisions than the window are never
+    // held in memory as a whole, and on parallel streams each of them is processed by a single thread while the
+    // rest of the dump waits
+    public Stream<PageHistory> pageHistories(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Illegal page history window: " + window);
+        }
+
+        if (lazyText) {
+            throw new IllegalStateException("Page histories are not available with lazy text");
+        }
+
+        var stream = stream();
+        var sp = new PageHistorySpliterator(stream.spliterator(), window);
+        return StreamSupport.stream(sp, false).onClose(stream::close);
+    }
+
+    public Stream<PageHistory> pageHistories() {
+        return pageHistories(DEFAULT_HISTORY_WINDOW);
+    }
+
+    // on full scans, store the revision of each page for later delta processing via changedSince(), if so configured
+    protected Stream<XMLRevision> recordRevisions(Stream<XMLRevision> stream) {
+        if (!needsRevisionMap()) {
+            return stream;
+        }
+
+        var recorder = new DumpRevisionMap.Recorder(getRevisionMapPath(dirName));
+        return StreamSupport.stream(recorder.wrap(stream.spliterator()), stream.isParallel()).onClose(stream::close);
+    }
+
+    private boolean needsRevisionMap() {
+        return trackRevisions && cacheDir != null && titles == null && ids == null && !Files.exists(getRevisionMapPath(dirName));
+    }
+
+    private Path getRevisionMapPath(String dirName) {
+        // independent of date, partitioning and compression, e.g. plwiktionary-pages-articles.xml
+        var filename = getDescriptiveFilename().replace("-" + this.dirName, "").replaceFirst("X?\\.xml.*", ".xml");
+        return DumpRevisionMap.makePath(cacheDir, database, dirName, filename);
+    }
+
+    private Optional<DumpRevisionMap> loadRevisionMap(String dirName) {
+        if (cacheDir == null || !trackRevisions) {
+            throw new IllegalStateException("Delta processing requires a cache directory and revision tracking");
+        }
+
+        if (titles != null || ids != null) {
+            throw new IllegalStateException("Delta processing is not available on dumps filtered by titles or page IDs");
+        }
+
+        return DumpRevisionMap.load(getRevisionMapPath(dirName));
+    }
+
+    private DumpRevisionMap getPreviousRevisionMap(String previousDirName) {
+        return loadRevisionMap(previousDirName).orElseThrow(() -> new IllegalStateException("No revision map stored for dump " + previousDirName));
+    }
+
+    // true if a full scan of the given dump (of the same type) has been performed with the same cache directory
+    public boolean canProcessChangesSince(String previousDirName) {
+        return cacheDir != null && trackRevisions && titles == null && ids == null && loadRevisionMap(previousDirName).isPresent();
+    }
+
+    // pages whose revision differs from the one in the given previous dump, including new pages;
+    // meant for dumps with one revision per page, the remaining ones are read but not emitted
+    public Stream<XMLRevision> changedSince(String previousDirName) {
+        var previous = getPreviousRevisionMap(previousDirName);
+        return stream().filter(previous::isChanged);
+    }
+
+    // page IDs present in the given previous dump, but not in this one; requires a full scan of this dump, which
+    // is performed here unless a previous full stream() or changedSince() has been consumed until the end
+    public List<Long> deletedSince(String previousDirName) {
+        var previous = getPreviousRevisionMap(previousDirName);
+
+        var current = loadRevisionMap(dirName).orElseGet(() -> {
+            try (var stream = stream()) {
+                stream.forEach(rev -> {});
+            }
+
+            return loadRevisionMap(dirName).orElseThrow();
+        });
+
+        return Arrays.stream(previous.missingFrom(current)).boxed().toList();
     }
 
     public final String getDescriptiveFilename() {
@@ -227,7 +535,7 @@ public class XMLDump {
             throw new IllegalStateException("Cannot filter titles on a dump that is already filtered by page IDs");
         }
 
-        this.titles = Collections.unmodifiableSet(new HashSet<>(Objects.requireNonNull(titles)));
+        this.titles = TitleSet.of(Objects.requireNonNull(titles));
         return this;
     }
 
@@ -236,7 +544,50 @@ public class XMLDump {
             throw new IllegalStateException("Cannot filter page IDs on a dump that is already filtered by titles");
         }
 
-        this.ids = Collections.unmodifiableSortedSet(new TreeSet<>(Objects.requireNonNull(ids)));
+        this.ids = PageIdSet.of(Objects.requireNonNull(ids));
+        return this;
+    }
+
+    public XMLDump filterNamespaces(int... namespaces) {
+        return filterNamespaces(IntStream.of(namespaces).boxed().toList());
+    }
+
+    public XMLDump filterNamespaces(Collection<Integer> namespaces) {
+        if (namespaces.isEmpty()) {
+            throw new IllegalArgumentException("No namespaces provided");
+        }
+
+        this.namespaces = Collections.unmodifiableSet(new HashSet<>(namespaces));
+        return this;
+    }
+
+    public XMLDump excludeRedirects() {
+        excludeRedirects = true;
+        return this;
+    }
+
+    // same source settings and filters on a different set of files
+    protected void copyConfigurationTo(XMLDump other) {
+        other.decompressionThreads = decompressionThreads;
+        other.maxInFlight = maxInFlight;
+        other.cacheDir = cacheDir;
+        other.fields = fields;
+        other.useByteScanner = useByteScanner;
+        other.progressInterval = progressInterval;
+        other.transcode = transcode;
+        other.readAheadSize = readAheadSize;
+        other.trackRevisions = trackRevisions;
+        other.titles = titles;
+        other.ids = ids;
+        other.namespaces = namespaces;
+        other.excludeRedirects = excludeRedirects;
+        other.lazyText = lazyText;
+    }
+
+    // revision text is copied only on XMLRevision.getText(), which must happen before the stream moves on,
+    // i.e. don't collect revisions and read their text afterwards
+    public XMLDump lazyText() {
+        lazyText = true;
         return this;
     }
 }
@@ -262,20 +613,91 @@ class MultistreamXMLDump extends XMLDump {
             throw new IllegalStateException("Unexpected number of files in grouped multistream dump");
         }
 
+        // sizes are only known for local files, other reads keep seeking
+        if (cacheDir != null && handler instanceof LocalDumpHandler && (titles != null || ids != null)) {
+            var sequential = findSequentialDump(grouped);
+            var plan = planRead(grouped, sequential);
+
+            System.out.printf("Read plan for %s: %s%n", getDescriptiveFilename(), plan);
+
+            if (plan.prefersScan()) {
+                return sequential.stream();
+            }
+        }
+
+        // pages are expected as each group's index is read, hence the ETA settles once all groups have been reached
+        var metrics = newMetrics();
+
         if (grouped.size() == 1) {
             var el = grouped.iterator().next();
 
             // preserve SIZED+SUBSIZED characteristics
-            return getReader(el.first(), el.last()).getStAXReaderStream();
+            var reader = getReader(el.first(), el.last(), metrics);
+            var stream = recordRevisions(useByteScanner ? reader.getScannerReaderStream() : reader.getStAXReaderStream());
+            return (hasPagePredicates() ? stream.filter(this::testPage) : stream).onClose(metrics::finish);
         }
 
-        var stream = grouped.stream()
+        var readers = new ConcurrentLinkedQueue<XMLConcatenatedStreamDumpReader>();
+
+        var sources = grouped.stream()
             .filter(group -> tryFilterPageId(group.first()))
-            .map(group -> getReader(group.first(), group.last()))
-            .flatMap(XMLConcatenatedStreamDumpReader::getStAXReaderStream);
+            .filter(group -> tryFilterStatistics(group.first()))
+            .<Supplier<Spliterator<XMLRevision>>>map(group -> () -> {
+                // retrieve offsets only once this group is reached
+                var reader = getReader(group.first(), group.last(), metrics);
+                readers.add(reader);
+                return useByteScanner ? reader.getScannerReaderSpliterator() : reader.getStAXReaderSpliterator();
+            })
+            .toList();
+
+        var sp = new ConcatenatedSpliterator<>(sources, StAXDumpReader.BASIC_CHARACTERISTICS);
+        var stream = recordRevisions(StreamSupport.stream(sp, false).onClose(() -> readers.forEach(XMLConcatenatedStreamDumpReader::closeOpenReaders)));
+        return (hasPagePredicates() ? stream.filter(this::testPage) : stream).onClose(metrics::finish);
+    }
+
+    // the pages-articles dump of the same date is smaller, otherwise the multistream files are decoded sequentially
+    private XMLDump findSequentialDump(Collection<TreeSet<String>> grouped) {
+        var sequential = fetchDirectory(handler, database, dirName, XMLDumpTypes.PAGES_ARTICLES, new XMLDumpFactoryImpl())
+            .orElseGet(() -> new XMLDump(handler, database, dirName, grouped.stream().map(TreeSet::first).toList()));
+
+        copyConfigurationTo(sequential);
+        return sequential;
+    }
+
+    private ReadPlan planRead(Collection<TreeSet<String>> grouped, XMLDump sequential) {
+        var selectedChunks = 0;
+        var totalChunks = 0;
+        var runs = 0;
+        var selectedBytes = 0L;
+
+        for (var group : grouped) {
+            if (!tryFilterPageId(group.first())) {
+                continue;
+            }
+
+            var index = getMappedIndex(group.last());
+            var chunks = titles != null ? index.selectChunksByTitles(titles.stream()) : index.selectChunksByPageIds(ids.stream());
+            var fileSize = getLocalSize(group.first());
+
+            for (int chunk = chunks.nextSetBit(0); chunk >= 0; chunk = chunks.nextSetBit(chunk + 1)) {
+                var end = chunk + 1 < index.getChunkCount() ? index.getChunkOffset(chunk + 1) : fileSize;
+                selectedBytes += end - index.getChunkOffset(chunk);
+
+                if (chunk == 0 || !chunks.get(chunk - 1)) {
+                    runs++;
+                }
+            }
+
+            selectedChunks += chunks.cardinality();
+            totalChunks += index.getChunkCount();
+        }
+
+        var scanBytes = sequential.filenames.stream()
+            .filter(sequential::tryFilterPageId)
+            .mapToLong(sequential::getLocalSize)
+            .sum();
 
-        var sp = Spliterators.spliteratorUnknownSize(stream.iterator(), StAXDumpReader.BASIC_CHARACTERISTICS);
-        return StreamSupport.stream(sp, false);
+        return new ReadPlan(selectedChunks, totalChunks, runs, selectedBytes, scanBytes, sequential.getDescriptiveFilename());
     }
 
     private FileChannel getDumpChannel(String filename) {
@@ -286,17 +708,53 @@ class MultistreamXMLDump extends XMLDump {
         }
     }
 
-    private XMLConcatenatedStreamDumpReader getReader(String main, String index) {
+    private XMLConcatenatedStreamDumpReader getReader(String main, String index, DumpMetrics metrics) {
         var dumpChannel = getDumpChannel(main);
-        var indexStream = handler.getInputStream(database, dirName, index);
+        final XMLConcatenatedStreamDumpReader reader;
 
-        if (titles != null) {
-            return XMLConcatenatedStreamDumpReader.ofTitles(dumpChannel, indexStream, titles);
-        } else if (ids != null) {
-            return XMLConcatenatedStreamDumpReader.ofPageIds(dumpChannel, indexStream, ids);
+        if (cacheDir != null) {
+            var mappedIndex = getMappedIndex(index);
+
+            if (titles != null) {
+                reader = XMLConcatenatedStreamDumpReader.ofTitles(dumpChannel, mappedIndex, titles);
+            } else if (ids != null) {
+                reader = XMLConcatenatedStreamDumpReader.ofPageIds(dumpChannel, mappedIndex, ids);
+            } else {
+                reader = XMLConcatenatedStreamDumpReader.ofAllPages(dumpChannel, mappedIndex);
+            }
         } else {
-            throw new IllegalStateException("Missing titles or ids");
+            var indexStream = handler.getInputStream(database, dirName, index);
+
+            if (titles != null) {
+                reader = XMLConcatenatedStreamDumpReader.ofTitles(dumpChannel, indexStream, titles);
+            } else if (ids != null) {
+                reader = XMLConcatenatedStreamDumpReader.ofPageIds(dumpChannel, indexStream, ids);
+            } else {
+                reader = XMLConcatenatedStreamDumpReader.ofAllPages(dumpChannel, indexStream);
+            }
+        }
+
+        if (canRecordStatistics()) {
+            var stats = loadStatistics(main);
+
+            if (stats.isPresent()) {
+                if (canUseStatistics()) {
+                    reader.withStatistics(stats.get(), this::mayContain);
+                }
+            } else if (titles == null && ids == null) {
+                reader.withStatisticsRecorder(getStatisticsPath(main), getSourcePath(main));
+            }
         }
+
+        reader.lazyText = lazyText;
+        reader.fields = fields;
+        reader.metrics = metrics;
+        return reader.withConcurrentDecoding(decompressionThreads, maxInFlight).withReadAhead(readAheadSize);
+    }
+
+    private MappedMultistreamIndex getMappedIndex(String index) {
+        var indexPath = Paths.get(handler.makePath(database, dirName, index));
+        return MappedMultistreamIndex.obtain(cacheDir, database, dirName, indexPath, () -> handler.getInputStream(database, dirName, index));
     }
 }
 
@@ -372,9 +830,17 @@ class LocalDumpHandler implements DumpHandler {
 
 class RemoteDumpHandler implements DumpHandler {
     private final String baseUrl;
+    private final DumpDownloadCache cache;
+    private final Map<String, JSONObject> statusFiles = new ConcurrentHashMap<>();
 
     RemoteDumpHandler(String baseUrl) {
+        this(baseUrl, null);
+    }
+
+    // files listed with a checksum in dumpstatus.json are downloaded to the cache, if provided
+    RemoteDumpHandler(String baseUrl, DumpDownloadCache cache) {
         this.baseUrl = Objects.requireNonNull(baseUrl);
+        this.cache = cache;
     }
 
     @Override
@@ -411,10 +877,42 @@ class RemoteDumpHandler implements DumpHandler {
     public InputStream getInputStream(String database, String date, String filename) {
         System.out.println("Reading " + filename);
 
+        if (cache != null) {
+            var info = findFileInfo(database, date, filename);
+
+            if (info.isPresent()) {
+                var checksum = info.get().optString("sha1", info.get().optString("md5"));
+                return cache.getInputStream(URI.create(makePath(database, date, filename)), info.get().getLong("size"), checksum);
+            }
+        }
+
         try {
             return URI.create(makePath(database, date, filename)).toURL().openStream();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
+
+    private Optional<JSONObject> findFileInfo(String database, String date, String filename) {
+        final JSONObject status;
+
+        try {
+            status = statusFiles.computeIfAbsent(database + "/" + date, k -> new JSONObject(getFileContent(database, date, XMLDump.STATUS_JSON)));
+        } catch (UncheckedIOException e) {
+            return Optional.empty(); // e.g. incremental dumps
+        }
+
+        var jobs = status.getJSONObject("jobs");
+
+        for (var key : jobs.keySet()) {
+            var files = jobs.getJSONObject(key).optJSONObject("files");
+            var info = files != null ? files.optJSONObject(filename) : null;
+
+            if (info != null && info.has("size") && (info.has("sha1") || info.has("md5"))) {
+                return Optional.of(info);
+            }
+        }
+
+        return Optional.empty();
+    }
 }
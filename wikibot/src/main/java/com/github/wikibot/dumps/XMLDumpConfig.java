@@ -2,17 +2,23 @@ package com.github.wikibot.dumps;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 public final class XMLDumpConfig {
     private static final Path DEFAULT_PATH = Paths.get("./data/dumps/");
     private static final String DEFAULT_BASE_URL = "https://dumps.wikimedia.org";
+    private static final Path DEFAULT_CACHE_PATH = DEFAULT_PATH.resolve("cache");
 
     private final String database;
     private Path path;
@@ -21,6 +27,16 @@ public final class XMLDumpConfig {
     private LocalDate refDate;
     private boolean useExactDate;
     private XMLDumpTypes type;
+    private int decompressionThreads = 1;
+    private int maxInFlight = 1;
+    private Path cacheDir;
+    private int downloadSegments = 1;
+    private Set<XMLRevisionField> fields = EnumSet.allOf(XMLRevisionField.class);
+    private boolean useByteScanner;
+    private Duration progressInterval = Duration.ZERO;
+    private boolean transcode;
+    private int readAheadSize = ChannelReadAhead.DEFAULT_WINDOW_SIZE;
+    private boolean trackRevisions;
 
     public XMLDumpConfig(String database) {
         this.database = Objects.requireNonNull(database);
@@ -79,7 +95,125 @@ public final class XMLDumpConfig {
         return type(XMLDumpTypes.valueOf(Objects.requireNonNull(label)));
     }
 
+    public XMLDumpConfig parallelDecompression(int threads, int maxInFlight) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of decompression threads: " + threads);
+        }
+
+        if (maxInFlight < threads) {
+            throw new IllegalArgumentException("The in-flight limit must not be lower than the number of threads: " + maxInFlight);
+        }
+
+        this.decompressionThreads = threads;
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public XMLDumpConfig parallelDecompression(int threads) {
+        // bounds memory usage to a few decompressed blocks (bzip2) or chunks (multistream) per thread
+        return parallelDecompression(threads, threads * 2);
+    }
+
+    public XMLDumpConfig parallelDecompression() {
+        return parallelDecompression(Runtime.getRuntime().availableProcessors());
+    }
+
+    // multistream chunks are fetched in sequential reads of this size, which also cover the following chunks
+    // if selected; larger windows pay off on network storage, smaller ones on sparse selections
+    public XMLDumpConfig readAhead(int bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("Illegal read-ahead size: " + bytes);
+        }
+
+        this.readAheadSize = bytes;
+        return this;
+    }
+
+    public XMLDumpConfig cache(Path path) {
+        this.cacheDir = Objects.requireNonNull(path);
+        return this;
+    }
+
+    public XMLDumpConfig cache() {
+        return cache(DEFAULT_CACHE_PATH);
+    }
+
+    // full scans store the revision ID of each page in the cache directory, for later delta processing via
+    // XMLDump.changedSince() and XMLDump.deletedSince()
+    public XMLDumpConfig trackRevisions() {
+        this.trackRevisions = true;
+        return this;
+    }
+
+    // remote dump files are downloaded to the cache directory in parallel HTTP range requests
+    public XMLDumpConfig parallelDownload(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Illegal number of download segments: " + segments);
+        }
+
+        this.downloadSegments = segments;
+        return this;
+    }
+
+    public XMLDumpConfig parallelDownload() {
+        // dumps.wikimedia.org throttles clients that open too many connections
+        return parallelDownload(2);
+    }
+
+    public XMLDumpConfig project(Set<XMLRevisionField> fields) {
+        this.fields = EnumSet.noneOf(XMLRevisionField.class);
+        this.fields.addAll(Objects.requireNonNull(fields));
+        return this;
+    }
+
+    public XMLDumpConfig project(XMLRevisionField... fields) {
+        // Set.of() would reject duplicates, EnumSet.copyOf() an empty collection
+        return project(fields.length != 0 ? EnumSet.copyOf(Arrays.asList(fields)) : EnumSet.noneOf(XMLRevisionField.class));
+    }
+
+    public XMLDumpConfig byteScanner() {
+        // use ByteScannerDumpReader instead of StAX
+        this.useByteScanner = true;
+        return this;
+    }
+
+    // periodic progress and ETA on stdout while a stream is read, followed by totals on close; zero (default) disables
+    public XMLDumpConfig reportProgress(Duration interval) {
+        if (interval.isNegative()) {
+            throw new IllegalArgumentException("Negative progress interval: " + interval);
+        }
+
+        this.progressInterval = interval;
+        return this;
+    }
+
+    // local bzip2 files are recompressed into chunked gzip in the cache directory on first read, which later reads
+    // decompress several times faster and split across threads; existing copies are always used if present;
+    // history dumps are not transcoded
+    public XMLDumpConfig transcode() {
+        this.transcode = true;
+        return this;
+    }
+
     public Optional<XMLDump> fetch() {
+        var dump = fetchInternal();
+        dump.ifPresent(this::configure);
+        return dump;
+    }
+
+    private void configure(XMLDump dump) {
+        dump.decompressionThreads = decompressionThreads;
+        dump.maxInFlight = maxInFlight;
+        dump.cacheDir = cacheDir;
+        dump.fields = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+        dump.useByteScanner = useByteScanner;
+        dump.progressInterval = progressInterval;
+        dump.transcode = transcode;
+        dump.readAheadSize = readAheadSize;
+        dump.trackRevisions = trackRevisions;
+    }
+
+    private Optional<XMLDump> fetchInternal() {
         if (type == null) {
             throw new IllegalStateException("No dump type specified");
         }
@@ -92,6 +226,14 @@ public final class XMLDumpConfig {
             throw new IllegalStateException("Cannot specify both latest option and a reference date");
         }
 
+        if (downloadSegments > 1 && cacheDir == null) {
+            throw new IllegalStateException("Parallel downloads require a cache directory");
+        }
+
+        if (transcode && (cacheDir == null || path == null)) {
+            throw new IllegalStateException("Transcoding requires a local dump and a cache directory");
+        }
+
         final DumpHandler handler;
         final XMLDumpFactory factory;
 
@@ -100,7 +242,9 @@ public final class XMLDumpConfig {
             handler = new LocalDumpHandler(resolvedPath);
         } else if (baseUrl != null) {
             var resolvedUrl = type.isIncremental() ? baseUrl + "/other/incr" : baseUrl;
-            handler = new RemoteDumpHandler(resolvedUrl);
+            // once downloaded, files are read from the cache by later runs
+            var cache = cacheDir != null ? new DumpDownloadCache(cacheDir.resolve("downloads"), downloadSegments) : null;
+            handler = new RemoteDumpHandler(resolvedUrl, cache);
         } else {
             throw new IllegalStateException("No source (local or remote) specified");
         }
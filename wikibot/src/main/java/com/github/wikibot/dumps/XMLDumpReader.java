@@ -9,19 +9,41 @@ import org.apache.commons.compress.compressors.CompressorStreamFactory;
 
 public class XMLDumpReader extends AbstractXMLDumpReader {
     private final InputStream is;
+    private final int decompressionThreads;
+    private final int maxInFlight;
 
     public XMLDumpReader(InputStream is) {
+        this(is, 1, 1);
+    }
+
+    public XMLDumpReader(InputStream is, int decompressionThreads, int maxInFlight) {
+        if (decompressionThreads < 1) {
+            throw new IllegalArgumentException("Illegal number of decompression threads: " + decompressionThreads);
+        }
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Illegal number of blocks in flight: " + maxInFlight);
+        }
+
         this.is = Objects.requireNonNull(is);
+        this.decompressionThreads = decompressionThreads;
+        this.maxInFlight = maxInFlight;
     }
 
     @Override
     protected InputStream getInputStream() {
-        var bis = new BufferedInputStream(is);
+        var bis = new BufferedInputStream(metrics.countCompressed(is));
 
         try {
-            return new CompressorStreamFactory(true).createCompressorInputStream(bis);
+            var compressorName = CompressorStreamFactory.detect(bis);
+
+            if (decompressionThreads > 1 && compressorName.equals(CompressorStreamFactory.BZIP2)) {
+                return metrics.countDecompressed(new ParallelBZip2InputStream(bis, decompressionThreads, maxInFlight));
+            }
+
+            return metrics.countDecompressed(new CompressorStreamFactory(true).createCompressorInputStream(compressorName, bis));
         } catch (CompressorException e) {
-            return bis; // assume uncompressed
+            return metrics.countDecompressed(bis); // assume uncompressed
         }
     }
 }
@@ -1,13 +1,18 @@
 package com.github.wikibot.dumps;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.OffsetDateTime;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import com.github.wikibot.utils.PageContainer;
 
 public class XMLRevision implements Serializable, Comparable<XMLRevision> {
     private static final long serialVersionUID = -7617943255499585377L;
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
 
     String title;
     int ns;
@@ -16,12 +21,15 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
     long revid;
     long parentid;
     String timestamp;
+    long epochSecond = NO_TIMESTAMP; // parsed along with the timestamp by the dump readers
     String contributor;
     boolean isAnonymousContributor;
     boolean isMinor;
     String comment;
     String text;
+    transient Supplier<String> lazyText; // only valid until the next revision is parsed
     int bytes;
+    String sha1; // base-36, empty if not available (e.g. revdeleted text)
     boolean isRevDeleted;
     boolean isCommentDeleted;
     boolean isUserDeleted;
@@ -30,6 +38,7 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
         parentid = 0;
         contributor = ""; // otherwise might be null if revdeleted
         comment = ""; // empty comment
+        sha1 = "";
     }
 
     public String getTitle() {
@@ -60,6 +69,11 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
         return timestamp;
     }
 
+    // Long.MIN_VALUE if there is no timestamp, e.g. if not projected
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
     public String getContributor() {
         return contributor;
     }
@@ -77,6 +91,11 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
     }
 
     public String getText() {
+        if (lazyText != null) {
+            text = lazyText.get();
+            lazyText = null;
+        }
+
         return text;
     }
 
@@ -84,6 +103,10 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
         return bytes;
     }
 
+    public String getSha1() {
+        return sha1;
+    }
+
     public boolean isMainNamespace() {
         return ns == 0;
     }
@@ -109,7 +132,7 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
     }
 
     public PageContainer toPageContainer() {
-        return new PageContainer(title, text, revid, OffsetDateTime.parse(timestamp));
+        return new PageContainer(title, getText(), revid, OffsetDateTime.parse(timestamp));
     }
 
     @Override
@@ -150,9 +173,68 @@ public class XMLRevision implements Serializable, Comparable<XMLRevision> {
             ",isMinor=" + isMinor +
             ",comment=" + comment +
             ",bytes=" + bytes +
+            ",sha1=" + sha1 +
             ",isRevDeleted=" + isRevDeleted +
             ",isCommentDeleted=" + isCommentDeleted +
             ",isUserDeleted=" + isUserDeleted +
-            ",text=" + text + "]";
+            ",text=" + (lazyText != null ? "(not loaded)" : text) + "]"; // don't force lazy text to load
+    }
+
+    // dump timestamps always follow the "yyyy-MM-ddTHH:mm:ssZ" pattern, avoid java.time on the hot path
+    static long parseEpochSecond(String timestamp) {
+        if (timestamp.length() != 20 || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T' ||
+            timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':' || timestamp.charAt(19) != 'Z'
+        ) {
+            return OffsetDateTime.parse(timestamp).toEpochSecond();
+        }
+
+        var year = parseDigits(timestamp, 0, 4);
+        var month = parseDigits(timestamp, 5, 7);
+        var day = parseDigits(timestamp, 8, 10);
+        var hours = parseDigits(timestamp, 11, 13);
+        var minutes = parseDigits(timestamp, 14, 16);
+        var seconds = parseDigits(timestamp, 17, 19);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return OffsetDateTime.parse(timestamp).toEpochSecond(); // let java.time report the error
+        }
+
+        // days from civil, see https://howardhinnant.github.io/date_algorithms.html
+        var y = month <= 2 ? year - 1 : year;
+        var era = y / 400;
+        var yearOfEra = y - era * 400;
+        var dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        var dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        var epochDay = era * 146097L + dayOfEra - 719468;
+
+        return epochDay * 86400 + hours * 3600 + minutes * 60 + seconds;
+    }
+
+    private static int parseDigits(String s, int start, int end) {
+        var value = 0;
+
+        for (var i = start; i < end; i++) {
+            var digit = s.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    // lazy text can only be serialized while the revision is still the current one in the dump reader, call getText()
+    // beforehand to keep revisions for later serialization
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        try {
+            getText();
+        } catch (IllegalStateException e) {
+            throw new NotSerializableException("Lazy text no longer available in revision " + revid);
+        }
+
+        out.defaultWriteObject();
     }
 }
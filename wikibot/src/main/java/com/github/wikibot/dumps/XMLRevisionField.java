@@ -0,0 +1,20 @@
+package com.github.wikibot.dumps;
+
+// revision fields that can be left out of XMLRevision instances; page info, ids and flags are always parsed
+public enum XMLRevisionField {
+    TIMESTAMP,
+    CONTRIBUTOR,
+    COMMENT,
+    TEXT;
+
+    // null if not a projectable element, called for every start element hence no Optional
+    static XMLRevisionField ofElement(String localName) {
+        return switch (localName) {
+            case "timestamp" -> TIMESTAMP;
+            case "username", "ip" -> CONTRIBUTOR;
+            case "comment" -> COMMENT;
+            case "text" -> TEXT;
+            default -> null;
+        };
+    }
+}
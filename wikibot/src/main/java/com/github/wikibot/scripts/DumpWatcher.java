@@ -4,11 +4,12 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
@@ -20,14 +21,16 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
-import jakarta.xml.bind.annotation.adapters.HexBinaryAdapter;
-
 import org.json.JSONObject;
 
 import com.github.wikibot.parsing.Utils;
@@ -36,11 +39,15 @@ public final class DumpWatcher {
     private static final Path DUMPS_SCHEDULE = Paths.get("./data/dumps/schedule.txt");
     private static final Path PUBLIC_DUMPS = Paths.get("./data/dumps/public/");
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd");
+    private static final Path CHECKSUM_CACHE = Paths.get("./data/dumps/checksums.txt");
     private static final String JOB_LAUNCHER = "jsub";
-    private static final long MAX_FILE_SIZE_FOR_CHECKSUM = 2500000000L; // ~2.5 GB
+    private static final int CHECKSUM_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final int CHECKSUM_BUFFER_SIZE = 1 << 24; // 16 MiB
 
     private static final JSONObject DUMP_CONFIG;
 
+    private static ChecksumCache checksumCache;
+
     static {
         var source = Utils.loadResource("/dump-config.json", DumpWatcher.class);
         DUMP_CONFIG = new JSONObject(source);
@@ -60,6 +67,8 @@ public final class DumpWatcher {
             entries = List.of(DumpEntry.parseCommandLine(line));
         }
 
+        checksumCache = ChecksumCache.load(CHECKSUM_CACHE);
+
         var modified = false;
 
         for (var entry : entries) {
@@ -92,6 +101,8 @@ public final class DumpWatcher {
             }
         }
 
+        checksumCache.save();
+
         if (modified) {
             System.out.println("Processing updated data...");
 
@@ -175,7 +186,7 @@ public final class DumpWatcher {
         return new ArrayList<>(map.values());
     }
 
-    private static boolean processDumpDirectory(DumpEntry entry, DumpDirectory dir) {
+    private static boolean processDumpDirectory(DumpEntry entry, DumpDirectory dir) throws InterruptedException, ExecutionException {
         if (!dir.testStatusInfo(entry.dumpTypes)) {
             return false;
         }
@@ -187,7 +198,7 @@ public final class DumpWatcher {
             return false;
         }
 
-        if (!targetedFiles.stream().allMatch(dir::testChecksum)) {
+        if (!testChecksums(dir, targetedFiles)) {
             return false;
         }
 
@@ -200,6 +211,27 @@ public final class DumpWatcher {
         return true;
     }
 
+    private static boolean testChecksums(DumpDirectory dir, List<Path> paths) throws InterruptedException, ExecutionException {
+        // all files are hashed (and cached) even if some of them fail the test
+        var executor = Executors.newFixedThreadPool(CHECKSUM_THREADS);
+
+        try {
+            var futures = paths.stream()
+                .map(path -> executor.submit(() -> dir.testChecksum(path)))
+                .toList();
+
+            var result = true;
+
+            for (var future : futures) {
+                result &= future.get();
+            }
+
+            return result;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     static class DumpEntry {
         String project;
         Date date;
@@ -392,25 +424,13 @@ public final class DumpWatcher {
                 return false;
             }
 
-            try (var input = new DigestInputStream(Files.newInputStream(path), MessageDigest.getInstance("SHA-1"))) {
-                if (Files.size(path) > MAX_FILE_SIZE_FOR_CHECKSUM) {
-                    System.out.println("Maximum size exceeded in checksum test step for file " + filename);
-                    return true;
-                }
-
-                var bytes = new byte[8192];
-
-                while (input.read(bytes) > 0) {}
-
-                var hex = new HexBinaryAdapter().marshal(input.getMessageDigest().digest()).toLowerCase();
+            try {
+                var hex = checksumCache.getSha1(path);
 
                 if (!hex.equals(sha1checksums.get(filename))) {
                     System.out.println("SHA1 checksum doesn't match for file " + filename);
                     return false;
                 }
-            } catch (NoSuchAlgorithmException e) {
-                e.printStackTrace();
-                return false;
             } catch (IOException e) {
                 System.out.println("Unable to obtain checksum: " + e.getMessage());
                 return false;
@@ -486,4 +506,87 @@ public final class DumpWatcher {
             return list;
         }
     }
+
+    // SHA-1 digests keyed by path, only recomputed if the size or the modification time of a file changes
+    static class ChecksumCache {
+        private final Path location;
+        private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+        private volatile boolean modified;
+
+        private record Entry(long size, long lastModified, String sha1) {}
+
+        private ChecksumCache(Path location) {
+            this.location = location;
+        }
+
+        static ChecksumCache load(Path location) throws IOException {
+            var cache = new ChecksumCache(location);
+
+            if (Files.exists(location)) {
+                for (var line : readLinesFromFile(location)) {
+                    var split = line.split("\t", 4);
+                    cache.entries.put(Paths.get(split[3]), new Entry(Long.parseLong(split[1]), Long.parseLong(split[2]), split[0]));
+                }
+
+                System.out.printf("Checksum cache retrieved (%d items)%n", cache.entries.size());
+            }
+
+            return cache;
+        }
+
+        void save() throws IOException {
+            // forget files that have been deleted in the meantime
+            modified |= entries.keySet().removeIf(path -> !Files.exists(path));
+
+            if (modified) {
+                var lines = entries.entrySet().stream()
+                    .map(e -> String.join("\t", e.getValue().sha1(), Long.toString(e.getValue().size()), Long.toString(e.getValue().lastModified()), e.getKey().toString()))
+                    .sorted()
+                    .toList();
+
+                Files.write(location, lines);
+                System.out.printf("Checksum cache updated (%d items)%n", lines.size());
+            }
+        }
+
+        String getSha1(Path path) throws IOException {
+            var size = Files.size(path);
+            var lastModified = Files.getLastModifiedTime(path).toMillis();
+            var entry = entries.get(path);
+
+            if (entry != null && entry.size() == size && entry.lastModified() == lastModified) {
+                return entry.sha1();
+            }
+
+            var start = System.currentTimeMillis();
+            var sha1 = computeSha1(path);
+
+            System.out.printf("Computed checksum of %s (%d bytes) in %d seconds%n", path.getFileName(), size, (System.currentTimeMillis() - start) / 1000);
+
+            entries.put(path, new Entry(size, lastModified, sha1));
+            modified = true;
+            return sha1;
+        }
+
+        private static String computeSha1(Path path) throws IOException {
+            final MessageDigest digest;
+
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+
+            // large sequential reads straight into native memory, no size limit
+            var buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_SIZE);
+
+            try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (channel.read(buffer.clear()) != -1) {
+                    digest.update(buffer.flip());
+                }
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
 }
@@ -10,6 +10,7 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -18,9 +19,9 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import javax.security.auth.login.AccountLockedException;
@@ -35,10 +36,13 @@ import org.json.JSONObject;
 import org.wikipedia.Wiki;
 import org.wikiutils.ParseUtils;
 
+import com.github.wikibot.dumps.IncrementalDumpCatalog;
+import com.github.wikibot.dumps.SelectiveJSONExtractor;
 import com.github.wikibot.dumps.XMLDump;
 import com.github.wikibot.dumps.XMLDumpConfig;
 import com.github.wikibot.dumps.XMLDumpTypes;
 import com.github.wikibot.dumps.XMLRevision;
+import com.github.wikibot.dumps.XMLRevisionField;
 import com.github.wikibot.main.Wikibot;
 import com.github.wikibot.utils.DBUtils;
 import com.github.wikibot.utils.Login;
@@ -57,6 +61,15 @@ public final class AuthorityControl {
 
     private static final Wikibot wb = Wikibot.newSession("pl.wikipedia.org");
 
+    // only what is needed by testClaims() and for retrieving the plwiki sitelink
+    private static final SelectiveJSONExtractor ENTITY_EXTRACTOR = new SelectiveJSONExtractor()
+        .select("type")
+        .select("sitelinks.plwiki.title")
+        .selectKeys("claims")
+        .select("claims.P31.*.mainsnak.snaktype")
+        .select("claims.P31.*.mainsnak.datavalue.type")
+        .select("claims.P31.*.mainsnak.datavalue.value.id");
+
     private static final Pattern P_TEXT = Pattern.compile(
         """
         # DEFAULTSORT + category + HTML comments (no strict order and optional)
@@ -116,7 +129,7 @@ public final class AuthorityControl {
 
             if (cli.hasOption("dump")) {
                 var datePath = LOCATION.resolve("last_dump_date.txt");
-                var config = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.PAGES_ARTICLES_MULTISTREAM).local();
+                var config = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.PAGES_ARTICLES_MULTISTREAM).local().cache();
 
                 if (Files.exists(datePath)) {
                     config.after(Files.readString(datePath).strip());
@@ -224,72 +237,50 @@ public final class AuthorityControl {
     }
 
     private static List<String> processIncrementalDumps(final LocalDate startDate, final LocalDate endDate) {
-        var titles = new ArrayList<String>();
-        var date = startDate;
+        final var patt = Pattern.compile("^Q\\d+$");
 
-        var stubsConfig = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.STUBS_META_HISTORY_INCR).local();
+        var stubsConfig = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.STUBS_META_HISTORY_INCR).local().project(EnumSet.noneOf(XMLRevisionField.class));
         var pagesConfig = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.PAGES_META_HISTORY_INCR).local();
 
-        while (date.isBefore(endDate)) {
-            var optStubsDump = stubsConfig.at(date).fetch();
-            var optPagesDump = pagesConfig.at(date).fetch();
+        var catalog = IncrementalDumpCatalog.fetch(stubsConfig, pagesConfig, startDate, endDate).lazyText();
 
-            if (optStubsDump.isPresent() && optPagesDump.isPresent()) {
-                var revids = retrieveRevids(optStubsDump.get());
-                titles.addAll(processDumpFile(optPagesDump.get(), rev -> revids.contains(rev.getRevid())));
-            }
-
-            date = date.plusDays(1);
+        if (catalog.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        return titles;
-    }
+        // entities edited on several days are only parsed once, in their newest revision
+        var newestRevids = catalog.retrieveNewestRevisions(rev ->
+            rev.isMainNamespace() && rev.nonRedirect() && patt.matcher(rev.getTitle()).matches()
+        );
 
-    private static Set<Long> retrieveRevids(XMLDump dump) {
-        final var patt = Pattern.compile("^Q\\d+$");
-        final Map<Long, Long> newestRevids;
-
-        try (var stream = dump.stream()) {
-            newestRevids = stream
-                .filter(XMLRevision::isMainNamespace)
-                .filter(XMLRevision::nonRedirect)
-                .filter(rev -> patt.matcher(rev.getTitle()).matches())
-                .collect(Collectors.toMap(
-                    XMLRevision::getPageid,
-                    XMLRevision::getRevid,
-                    (a, b) -> b
-                ));
+        try (var stream = catalog.stream(newestRevids)) {
+            return processRevisions(stream.parallel());
         }
-
-        var revids = new HashSet<>(newestRevids.values());
-        System.out.printf("Retrieved %d incr dump revisions.%n", revids.size());
-        return revids;
     }
 
     private static List<String> processDumpFile(XMLDump dump) {
-        return processDumpFile(dump, rev -> true);
+        try (var stream = dump.lazyText().stream()) {
+            return processRevisions(stream);
+        }
     }
 
-    private static List<String> processDumpFile(XMLDump dump, Predicate<XMLRevision> pred) {
+    private static List<String> processRevisions(Stream<XMLRevision> stream) {
         final var qPatt = Pattern.compile("^Q\\d+$");
 
-        try (var stream = dump.stream()) {
-            return stream
-                .filter(XMLRevision::isMainNamespace)
-                .filter(XMLRevision::nonRedirect)
-                .filter(rev -> qPatt.matcher(rev.getTitle()).matches())
-                .filter(pred)
-                .filter(rev -> !rev.isRevisionDeleted())
-                .filter(rev -> !rev.getText().isBlank()) // phab: T365155
-                .map(rev -> new JSONObject(rev.getText()))
-                // https://doc.wikimedia.org/Wikibase/master/php/md_docs_topics_json.html
-                .filter(json -> json.optString("type").equals("item"))
-                .filter(json -> Optional.ofNullable(json.optJSONObject("sitelinks")).filter(sl -> sl.has("plwiki")).isPresent())
-                .filter(json -> Optional.ofNullable(json.optJSONObject("claims")).filter(AuthorityControl::testClaims).isPresent())
-                .map(json -> json.getJSONObject("sitelinks").getJSONObject("plwiki").getString("title"))
-                .distinct() // hist-incr dumps may list several revisions per page
-                .collect(Collectors.toCollection(ArrayList::new));
-        }
+        return stream
+            .filter(XMLRevision::isMainNamespace)
+            .filter(XMLRevision::nonRedirect)
+            .filter(rev -> qPatt.matcher(rev.getTitle()).matches())
+            .filter(rev -> !rev.isRevisionDeleted())
+            .filter(rev -> !rev.getText().isBlank()) // phab: T365155
+            .map(ENTITY_EXTRACTOR)
+            // https://doc.wikimedia.org/Wikibase/master/php/md_docs_topics_json.html
+            .filter(json -> json.optString("type").equals("item"))
+            .filter(json -> Optional.ofNullable(json.optJSONObject("sitelinks")).filter(sl -> sl.has("plwiki")).isPresent())
+            .filter(json -> Optional.ofNullable(json.optJSONObject("claims")).filter(AuthorityControl::testClaims).isPresent())
+            .map(json -> json.getJSONObject("sitelinks").getJSONObject("plwiki").getString("title"))
+            .distinct() // hist-incr dumps may list several revisions per page
+            .collect(Collectors.toCollection(ArrayList::new));
     }
 
     private static boolean testClaims(JSONObject json) {
@@ -49,6 +49,7 @@ import org.eclipse.rdf4j.repository.sparql.SPARQLRepository;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.github.wikibot.dumps.SelectiveJSONExtractor;
 import com.github.wikibot.dumps.XMLDumpConfig;
 import com.github.wikibot.dumps.XMLDumpTypes;
 import com.github.wikibot.dumps.XMLRevision;
@@ -72,6 +73,10 @@ public final class MissingWomenBiograms {
     private static final int MAX_PRINTED_RESULTS = 500;
     private static final String STATIC_URL_DUMP_FMT = "//tools-static.wmflabs.org/pbbot/plwiki/missing-women-biograms/%s.xml.bz2";
 
+    private static final SelectiveJSONExtractor ENTITY_EXTRACTOR = new SelectiveJSONExtractor()
+        .select("claims.P21.*.mainsnak.datavalue.value.id")
+        .selectKeys("sitelinks");
+
     private static final List<QueryItem> QUERY_CONFIG;
     private static final DateTimeFormatter DATE_FORMATTER;
 
@@ -107,7 +112,7 @@ public final class MissingWomenBiograms {
         var dumpFilename = "";
 
         if (line.hasOption("dump")) {
-            var dumpConfig = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.PAGES_ARTICLES_MULTISTREAM).local();
+            var dumpConfig = new XMLDumpConfig("wikidatawiki").type(XMLDumpTypes.PAGES_ARTICLES_MULTISTREAM).local().cache();
 
             if (Files.exists(LATEST_DATE)) {
                 dumpConfig.after(Files.readString(LATEST_DATE));
@@ -126,9 +131,13 @@ public final class MissingWomenBiograms {
                 stream
                     .filter(XMLRevision::nonRedirect)
                     .filter(rev -> !rev.getText().isEmpty()) // may happen due to dump corruption (self-closing <text> tag)
+                    .filter(rev -> {
+                        // cheap pre-selection, the full entity is only parsed for matching revisions
+                        var json = ENTITY_EXTRACTOR.apply(rev);
+                        return Optional.ofNullable(json.optJSONObject("claims")).filter(MissingWomenBiograms::isWoman).isPresent() &&
+                            Optional.ofNullable(json.optJSONObject("sitelinks")).filter(sl -> sl.has("plwiki")).isEmpty();
+                    })
                     .map(rev -> new JSONObject(rev.getText()))
-                    .filter(json -> Optional.ofNullable(json.optJSONObject("claims")).filter(MissingWomenBiograms::isWoman).isPresent())
-                    .filter(json -> Optional.ofNullable(json.optJSONObject("sitelinks")).filter(sl -> sl.has("plwiki")).isEmpty())
                     .forEach(json -> analyzeEntity(json, entries));
             }
 
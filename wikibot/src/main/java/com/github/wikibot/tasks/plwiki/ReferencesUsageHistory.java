@@ -26,6 +26,7 @@ import org.wikipedia.Wiki;
 import org.wikiutils.ParseUtils;
 
 import com.github.wikibot.dumps.EnumStats;
+import com.github.wikibot.dumps.RevisionMemoizer;
 import com.github.wikibot.dumps.TimelineCollectors;
 import com.github.wikibot.dumps.XMLDump;
 import com.github.wikibot.dumps.XMLDumpConfig;
@@ -64,7 +65,10 @@ public final class ReferencesUsageHistory {
         var dump = optDump.get();
         var sb = new StringBuilder();
 
-        try (var stream = dump.stream()) {
+        // reverted revisions restore texts that have already been analyzed
+        var memoizer = RevisionMemoizer.ofStats(REFS.class, ReferencesUsageHistory::acceptRevision);
+
+        try (var stream = dump.parallelStream()) {
             System.out.println("start: " + OffsetDateTime.now());
 
             var timeline = stream
@@ -76,10 +80,11 @@ public final class ReferencesUsageHistory {
                     OffsetDateTime.now(),
                     Period.ofMonths(1),
                     REFS.class,
-                    ReferencesUsageHistory::acceptRevision
+                    (rev, stats) -> stats.combine(memoizer.apply(rev))
                 ));
 
             System.out.println("end: " + OffsetDateTime.now());
+            System.out.println("memoized analyses: " + memoizer);
             System.out.println(timeline);
 
             sb.append("{| class=\"wikitable\"\n");
@@ -1,16 +1,20 @@
 package com.github.wikibot.tasks.plwikt;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.Collator;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
@@ -20,6 +24,7 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang3.mutable.MutableInt;
 
 import com.github.wikibot.dumps.XMLDump;
 import com.github.wikibot.dumps.XMLDumpConfig;
@@ -30,10 +35,12 @@ import com.github.wikibot.parsing.plwikt.FieldTypes;
 import com.github.wikibot.parsing.plwikt.Page;
 import com.github.wikibot.utils.Login;
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
 
 public final class BoldedSelflinks {
     private static final Path LOCATION = Paths.get("./data/tasks.plwikt/BoldedSelflinks/");
     private static final String TARGET_PAGE = "Wikipedysta:PBbot/pogrubione selflinki";
+    private static final Path PAGE_CACHE = LOCATION.resolve("page_cache.xml");
 
     // https://pl.wiktionary.org/wiki/MediaWiki:Gadget-section-links.js
     private static final List<String> IGNORED_SELFLINKS = List.of(
@@ -138,7 +145,7 @@ public final class BoldedSelflinks {
                     dumpConfig.after(Files.readString(path).strip());
                 }
 
-                dumpConfig.local();
+                dumpConfig.local().cache().trackRevisions(); // for delta processing on the next dump
             } else {
                 new HelpFormatter().printHelp(BoldedSelflinks.class.getName(), options);
                 throw new IllegalArgumentException();
@@ -151,30 +158,96 @@ public final class BoldedSelflinks {
     }
 
     private static List<Item> analyzeDump(XMLDump dump) {
+        var optCache = loadPageCache();
+        final HashMap<Long, ArrayList<Item>> pageItems;
+
+        if (optCache.isPresent() && dump.canProcessChangesSince(optCache.get().dirName)) {
+            // only pages edited since the previously analyzed dump
+            var previous = optCache.get().dirName;
+            pageItems = optCache.get().items;
+
+            try (var stream = dump.changedSince(previous)) {
+                var changed = new MutableInt();
+
+                stream.forEach(rev -> {
+                    var items = analyzeRevision(rev);
+                    changed.increment();
+
+                    if (!items.isEmpty()) {
+                        pageItems.put(rev.getPageid(), items);
+                    } else {
+                        pageItems.remove(rev.getPageid());
+                    }
+                });
+
+                var deleted = dump.deletedSince(previous);
+                deleted.forEach(pageItems::remove);
+                System.out.printf("Analyzed %d changed pages, %d deleted since %s%n", changed.intValue(), deleted.size(), previous);
+            }
+        } else {
+            try (var stream = dump.stream()) {
+                pageItems = stream
+                    .map(rev -> Map.entry(rev.getPageid(), analyzeRevision(rev)))
+                    .filter(e -> !e.getValue().isEmpty())
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> b, HashMap::new));
+            }
+        }
+
+        storePageCache(new PageCache(dump.getDirectoryName(), pageItems));
+
+        return pageItems.values().stream()
+            .flatMap(List::stream)
+            .sorted((i1, i2) -> COLL_PL.compare(i1.title, i2.title))
+            .toList();
+    }
+
+    private static ArrayList<Item> analyzeRevision(XMLRevision rev) {
         final var pNewline = Pattern.compile("\n");
 
-        try (var stream = dump.stream()) {
-            return stream
-                .filter(XMLRevision::nonRedirect)
-                .filter(XMLRevision::isMainNamespace)
-                .map(rev -> Page.store(rev.getTitle(), rev.getText()))
-                .flatMap(p -> p.getAllSections().stream()
-                    .filter(s -> !IGNORED_LANGS.contains(s.getLangShort()))
-                    .flatMap(s -> s.getAllFields().stream()
-                        .filter(f -> !f.isEmpty())
-                        .filter(f -> IGNORED_FIELDS.entrySet().stream()
-                            .allMatch(e -> f.getFieldType() != e.getKey() || e.getValue().contains(s.getLangShort()))
-                        )
-                        .flatMap(f -> pNewline.splitAsStream(f.getContent())
-                            .filter(line -> filterLines(line, p.getTitle(), s.getLangShort()))
-                            .map(line ->
-                                new Item(p.getTitle(), s.getLangShort(), f.getFieldType().localised(), line)
-                            )
-                        )
+        if (!rev.nonRedirect() || !rev.isMainNamespace()) {
+            return new ArrayList<>();
+        }
+
+        var p = Page.store(rev.getTitle(), rev.getText());
+
+        return p.getAllSections().stream()
+            .filter(s -> !IGNORED_LANGS.contains(s.getLangShort()))
+            .flatMap(s -> s.getAllFields().stream()
+                .filter(f -> !f.isEmpty())
+                .filter(f -> IGNORED_FIELDS.entrySet().stream()
+                    .allMatch(e -> f.getFieldType() != e.getKey() || e.getValue().contains(s.getLangShort()))
+                )
+                .flatMap(f -> pNewline.splitAsStream(f.getContent())
+                    .filter(line -> filterLines(line, p.getTitle(), s.getLangShort()))
+                    .map(line ->
+                        new Item(p.getTitle(), s.getLangShort(), f.getFieldType().localised(), line)
                     )
                 )
-                .sorted((i1, i2) -> COLL_PL.compare(i1.title, i2.title))
-                .toList();
+            )
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static Optional<PageCache> loadPageCache() {
+        if (!Files.exists(PAGE_CACHE)) {
+            return Optional.empty();
+        }
+
+        var xstream = new XStream();
+        xstream.allowTypes(new Class[] {PageCache.class, Item.class});
+
+        try {
+            return Optional.of((PageCache)xstream.fromXML(Files.readString(PAGE_CACHE)));
+        } catch (IOException | XStreamException | ClassCastException e) {
+            System.out.println("Unable to load page cache, performing a full scan: " + e);
+            return Optional.empty();
+        }
+    }
+
+    private static void storePageCache(PageCache cache) {
+        try {
+            Files.writeString(PAGE_CACHE, new XStream().toXML(cache));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -266,5 +339,40 @@ public final class BoldedSelflinks {
         return PAGE_INTRO.replace("$1", timestamp) + output;
     }
 
-    private record Item (String title, String language, String fieldType, String line) {}
+    // not a record, XStream can't deserialize those
+    private static class Item {
+        String title;
+        String language;
+        String fieldType;
+        String line;
+
+        Item(String title, String language, String fieldType, String line) {
+            this.title = title;
+            this.language = language;
+            this.fieldType = fieldType;
+            this.line = line;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(title, language, fieldType, line);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || obj instanceof Item i &&
+                title.equals(i.title) && language.equals(i.language) && fieldType.equals(i.fieldType) && line.equals(i.line);
+        }
+    }
+
+    // results per page ID of the last analyzed dump, only pages with at least one item
+    private static class PageCache {
+        String dirName;
+        HashMap<Long, ArrayList<Item>> items;
+
+        PageCache(String dirName, HashMap<Long, ArrayList<Item>> items) {
+            this.dirName = dirName;
+            this.items = items;
+        }
+    }
 }
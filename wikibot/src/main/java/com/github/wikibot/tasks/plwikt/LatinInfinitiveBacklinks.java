@@ -5,6 +5,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
@@ -13,7 +14,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.cli.DefaultParser;
@@ -23,6 +23,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.lang3.Strings;
 import org.wikiutils.ParseUtils;
 
+import com.github.wikibot.dumps.DumpMultiplexer;
 import com.github.wikibot.dumps.XMLDump;
 import com.github.wikibot.dumps.XMLDumpConfig;
 import com.github.wikibot.dumps.XMLDumpTypes;
@@ -37,6 +38,8 @@ public class LatinInfinitiveBacklinks {
     private static final Path LOCATION = Paths.get("./data/tasks.plwikt/LatinInfinitiveBacklinks/");
     private static final String TARGET_PAGE = "Wikisłownikarz:PBbot/łacińskie bezokoliczniki";
     private static final Pattern P_LINK = Pattern.compile("\\[\\[:?([^\\]|]+)(?:\\|((?:]?[^\\]|])*+))*\\]\\]");
+    private static final Pattern P_TRANSLATIONS = Pattern.compile("^\\* *łaciński:.+", Pattern.MULTILINE);
+    private static final Pattern P_ARROW = Pattern.compile("→[^•]+•?");
 
     private static final String[] LATIN_SHORTS = {
         "łac", "łaciński", "łacińskie", "łacina", "stłac", "nłac", "płac", "śrłac", "łackośc", "nowołaciński", "nowołacińskie", "późnołaciński", "późnołacińskie",
@@ -79,13 +82,28 @@ public class LatinInfinitiveBacklinks {
 
         Login.login(wb);
 
-        var etymResults = doEtymology(dump);
+        var etymItems = new ArrayList<Item>();
+        var translationItems = new ArrayList<Item>();
+        var wikilinkItems = new ArrayList<Item>();
+
+        // single pass over the dump, each page is parsed at most once and shared by both section-based tasks
+        var failures = new DumpMultiplexer<Page>(dump.filterNamespaces(0).excludeRedirects(), Page::wrap)
+            .register("etymology", rev -> findEtymology(rev, etymItems))
+            .register("translations", (rev, page) -> findTranslations(page.get(), translationItems))
+            .register("wikilinks", (rev, page) -> findWikilinks(page.get(), wikilinkItems))
+            .run();
+
+        if (!failures.isEmpty()) {
+            throw new RuntimeException("Failed tasks: " + failures.keySet(), failures.values().iterator().next());
+        }
+
+        var etymResults = format(etymItems, Comparator.naturalOrder());
         System.out.println("Etymology results: " + etymResults.size());
 
-        var translationResults = doTranslations(dump);
+        var translationResults = format(translationItems, Collator.getInstance(Locale.forLanguageTag("pl"))::compare);
         System.out.println("Translation results: " + translationResults.size());
 
-        var wikilinkResults = doWikilinks(dump);
+        var wikilinkResults = format(wikilinkItems, Comparator.naturalOrder());
         System.out.println("Wikilink results: " + wikilinkResults.size());
 
         var hashPath = LOCATION.resolve("hash.txt");
@@ -153,104 +171,78 @@ public class LatinInfinitiveBacklinks {
             .map(Map.Entry::getValue);
     }
 
-    private static List<String> doEtymology(XMLDump dump) throws IOException {
-        try (var stream = dump.stream()) {
-            return stream
-                .filter(XMLRevision::isMainNamespace)
-                .filter(XMLRevision::nonRedirect)
-                .<Item>mapMulti((rev, cons) -> {
-                    var infinitives = Stream.concat(
-                            Stream.concat(
-                                ParseUtils.getTemplates("etym", rev.getText()).stream(),
-                                ParseUtils.getTemplates("etymn", rev.getText()).stream()
-                            ).flatMap(template -> getEtymologyParams(template, false)),
-                            Stream.concat(
-                                ParseUtils.getTemplates("etym2", rev.getText()).stream(),
-                                ParseUtils.getTemplates("etymn2", rev.getText()).stream()
-                            ).flatMap(template -> getEtymologyParams(template, true))
-                        )
-                        .filter(param -> param.length() > 3)
-                        .filter(param -> !param.contains("-"))
-                        .filter(param -> Strings.CS.endsWithAny(param, LATIN_DESINENCES))
-                        .sorted()
-                        .distinct()
-                        .toList();
-
-                    if (!infinitives.isEmpty()) {
-                        cons.accept(new Item(rev.getTitle(), infinitives));
-                    }
-                })
-                .sorted(Comparator.comparing(Item::title))
-                .map(i -> String.format("#[[%s]]: %s", i.title(), i.infinitives().stream().collect(Collectors.joining(", "))))
-                .toList();
+    private static void findEtymology(XMLRevision rev, List<Item> items) {
+        var infinitives = Stream.concat(
+                Stream.concat(
+                    ParseUtils.getTemplates("etym", rev.getText()).stream(),
+                    ParseUtils.getTemplates("etymn", rev.getText()).stream()
+                ).flatMap(template -> getEtymologyParams(template, false)),
+                Stream.concat(
+                    ParseUtils.getTemplates("etym2", rev.getText()).stream(),
+                    ParseUtils.getTemplates("etymn2", rev.getText()).stream()
+                ).flatMap(template -> getEtymologyParams(template, true))
+            )
+            .filter(param -> param.length() > 3)
+            .filter(param -> !param.contains("-"))
+            .filter(param -> Strings.CS.endsWithAny(param, LATIN_DESINENCES))
+            .sorted()
+            .distinct()
+            .toList();
+
+        if (!infinitives.isEmpty()) {
+            items.add(new Item(rev.getTitle(), infinitives));
         }
     }
 
-    private static List<String> doTranslations(XMLDump dump) {
-        var patt = Pattern.compile("^\\* *łaciński:.+", Pattern.MULTILINE);
-
-        try (var stream = dump.stream()) {
-            return stream
-                .filter(XMLRevision::isMainNamespace)
-                .filter(XMLRevision::nonRedirect)
-                .map(Page::wrap)
-                .flatMap(p -> p.getPolishSection().stream())
-                .flatMap(s -> s.getField(FieldTypes.TRANSLATIONS).stream())
-                .filter(f -> f.getContent().contains("łaciński"))
-                .<Item>mapMulti((f, cons) -> {
-                    var infinitives = patt.matcher(f.getContent()).results()
-                        .map(MatchResult::group)
-                        .flatMap(line -> P_LINK.matcher(line).results())
-                        .map(mr -> mr.group(1))
-                        .map(String::strip)
-                        .filter(title -> Strings.CS.endsWithAny(title, LATIN_DESINENCES))
-                        .sorted()
-                        .distinct()
-                        .toList();
-
-                    if (!infinitives.isEmpty()) {
-                        var title = f.getContainingSection().get().getContainingPage().get().getTitle();
-                        cons.accept(new Item(title, infinitives));
-                    }
-                })
-                .sorted(Comparator.comparing(Item::title, Collator.getInstance(Locale.forLanguageTag("pl"))))
-                .map(i -> String.format("#[[%s]]: %s", i.title(), String.join(", ", i.infinitives())))
-                .toList();
-        }
+    private static void findTranslations(Page page, List<Item> items) {
+        page.getPolishSection().stream()
+            .flatMap(s -> s.getField(FieldTypes.TRANSLATIONS).stream())
+            .filter(f -> f.getContent().contains("łaciński"))
+            .forEach(f -> {
+                var infinitives = P_TRANSLATIONS.matcher(f.getContent()).results()
+                    .map(MatchResult::group)
+                    .flatMap(line -> P_LINK.matcher(line).results())
+                    .map(mr -> mr.group(1))
+                    .map(String::strip)
+                    .filter(title -> Strings.CS.endsWithAny(title, LATIN_DESINENCES))
+                    .sorted()
+                    .distinct()
+                    .toList();
+
+                if (!infinitives.isEmpty()) {
+                    var title = f.getContainingSection().get().getContainingPage().get().getTitle();
+                    items.add(new Item(title, infinitives));
+                }
+            });
     }
 
-    private static List<String> doWikilinks(XMLDump dump) throws IOException {
-        var patt = Pattern.compile("→[^•]+•?");
-
-        try (var stream = dump.stream()) {
-            return stream
-                .filter(XMLRevision::isMainNamespace)
-                .filter(XMLRevision::nonRedirect)
-                .map(Page::wrap)
-                .flatMap(p -> p.getSection("łaciński", true).stream())
-                .<Item>mapMulti((s, cons) -> {
-                    var infinitives = s.getAllFields().stream()
-                        .filter(f -> !f.isEmpty())
-                        .map(Field::getContent)
-                        .map(content -> patt.matcher(content).replaceAll(""))
-                        .map(content -> s.getHeader() + content) // also analyze links in header
-                        .flatMap(content -> P_LINK.matcher(content).results())
-                        .map(mr -> mr.group(1))
-                        .map(String::strip)
-                        .filter(title -> Strings.CS.endsWithAny(title, LATIN_DESINENCES))
-                        .sorted()
-                        .distinct()
-                        .toList();
-
-                    if (!infinitives.isEmpty()) {
-                        var title = s.getContainingPage().get().getTitle();
-                        cons.accept(new Item(title, infinitives));
-                    }
-                })
-                .sorted(Comparator.comparing(Item::title))
-                .map(i -> String.format("#[[%s]]: %s", i.title(), String.join(", ", i.infinitives())))
+    private static void findWikilinks(Page page, List<Item> items) {
+        page.getSection("łaciński", true).ifPresent(s -> {
+            var infinitives = s.getAllFields().stream()
+                .filter(f -> !f.isEmpty())
+                .map(Field::getContent)
+                .map(content -> P_ARROW.matcher(content).replaceAll(""))
+                .map(content -> s.getHeader() + content) // also analyze links in header
+                .flatMap(content -> P_LINK.matcher(content).results())
+                .map(mr -> mr.group(1))
+                .map(String::strip)
+                .filter(title -> Strings.CS.endsWithAny(title, LATIN_DESINENCES))
+                .sorted()
+                .distinct()
                 .toList();
-        }
+
+            if (!infinitives.isEmpty()) {
+                var title = s.getContainingPage().get().getTitle();
+                items.add(new Item(title, infinitives));
+            }
+        });
+    }
+
+    private static List<String> format(List<Item> items, Comparator<String> comparator) {
+        return items.stream()
+            .sorted(Comparator.comparing(Item::title, comparator))
+            .map(i -> String.format("#[[%s]]: %s", i.title(), String.join(", ", i.infinitives())))
+            .toList();
     }
 
     record Item(String title, List<String> infinitives) {}